@@ -1,10 +1,15 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.LikeStatus;
 import ru.yandex.practicum.filmorate.service.FilmService;
 
 import javax.validation.Valid;
@@ -17,6 +22,8 @@ import java.util.Optional;
 @RequiredArgsConstructor
 public class FilmController {
 
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
     private final FilmService service;
 
     @PostMapping
@@ -24,19 +31,52 @@ public class FilmController {
         return service.create(film);
     }
 
+    @PostMapping("/batch")
+    List<Integer> createBatch(@RequestBody List<@Valid Film> films) {
+        return service.createBatch(films);
+    }
+
     @PutMapping
     Film update(@RequestBody @Valid Film updatedFilm) {
         return service.update(updatedFilm);
     }
 
+    /**
+     * Без параметра limit возвращает весь каталог. С ним - страницу фильмов с id больше after,
+     * а id последнего фильма полной страницы передается в заголовке X-Next-Cursor.
+     * Параметр fields здесь и в остальных чтениях оставляет в ответе только перечисленные поля
+     * (id есть всегда), а незапрошенные связи фильмов не читаются из базы.
+     */
     @GetMapping
-    List<Film> getAll() {
-        return service.getAll();
+    ResponseEntity<List<ObjectNode>> getAll(@RequestParam(required = false) Integer limit,
+                                            @RequestParam(defaultValue = "0") int after,
+                                            @RequestParam(required = false) List<String> fields) {
+        if (limit == null) {
+            return ResponseEntity.ok(service.getAll(fields));
+        }
+        return withCursor(service.getPage(after, limit, fields), limit);
+    }
+
+    private static ResponseEntity<List<ObjectNode>> withCursor(List<ObjectNode> page, int limit) {
+        if (page.size() < limit) {
+            return ResponseEntity.ok(page);
+        }
+        return ResponseEntity.ok()
+                .header(NEXT_CURSOR_HEADER, page.get(page.size() - 1).get("id").asText())
+                .body(page);
+    }
+
+    @GetMapping("/export")
+    ResponseEntity<StreamingResponseBody> export() {
+        return ResponseEntity.ok()
+                .contentType(NDJSON)
+                .body(service::exportAll);
     }
 
     @GetMapping("/{id}")
-    Film getById(@PathVariable(value = "id") int id) {
-        return service.getById(id);
+    ObjectNode getById(@PathVariable(value = "id") int id,
+                       @RequestParam(required = false) List<String> fields) {
+        return service.getById(id, fields);
     }
 
     @PutMapping("/{id}/like/{userId}")
@@ -45,24 +85,51 @@ public class FilmController {
         return service.addLike(id, userId);
     }
 
+    /**
+     * Краткий ответ без перечитывания фильма: {filmId, likeCount, liked}.
+     */
+    @PutMapping(value = "/{id}/like/{userId}", params = "brief=true")
+    LikeStatus setLikeBrief(@PathVariable int id,
+                            @PathVariable int userId) {
+        return service.addLikeStatus(id, userId);
+    }
+
     @DeleteMapping("/{id}/like/{userId}")
     Film removeLike(@PathVariable int id,
                     @PathVariable int userId) {
         return service.removeLike(id, userId);
     }
 
+    @DeleteMapping(value = "/{id}/like/{userId}", params = "brief=true")
+    LikeStatus removeLikeBrief(@PathVariable int id,
+                               @PathVariable int userId) {
+        return service.removeLikeStatus(id, userId);
+    }
+
     @GetMapping("/popular")
-    public List<Film> getPopularFilms(@RequestParam(defaultValue = "10", value = "count") int count,
-                                      @RequestParam(required = false) Integer genreId,
-                                      @RequestParam(required = false) Integer year) {
-        return service.getPopular(count, genreId, year);
+    public List<ObjectNode> getPopularFilms(@RequestParam(defaultValue = "10", value = "count") int count,
+                                            @RequestParam(required = false) Integer genreId,
+                                            @RequestParam(required = false) Integer year,
+                                            @RequestParam(required = false) List<String> fields) {
+        return service.getPopular(count, genreId, year, fields);
+    }
+
+    @GetMapping("/trending")
+    public List<Film> getTrendingFilms(@RequestParam(defaultValue = "7d") String window,
+                                       @RequestParam(defaultValue = "10", value = "count") int count,
+                                       @RequestParam(required = false) Integer genreId,
+                                       @RequestParam(required = false) Integer year) {
+        return service.getTrending(window, count, genreId, year);
     }
 
     @GetMapping("/director/{directorId}")
     @ResponseStatus(HttpStatus.OK)
-    public List<Film> getFilmsByDirector(@PathVariable int directorId,
-                                         @RequestParam(required = false) Optional<String> sortBy) {
-        return service.getFilmsByDirector(directorId, sortBy.orElse("likes"));
+    public List<ObjectNode> getFilmsByDirector(@PathVariable int directorId,
+                                               @RequestParam(required = false) Optional<String> sortBy,
+                                               @RequestParam(required = false) Integer limit,
+                                               @RequestParam(defaultValue = "0") int offset,
+                                               @RequestParam(required = false) List<String> fields) {
+        return service.getFilmsByDirector(directorId, sortBy.orElse("likes"), limit, offset, fields);
     }
 
     @DeleteMapping("/{filmId}")
@@ -72,9 +139,10 @@ public class FilmController {
 
     @GetMapping("/search")
     @ResponseStatus(HttpStatus.OK)
-    public List<Film> searchFilms(@RequestParam String query,
-                                  @RequestParam List<String> by) {
-        return service.searchFilms(query, by);
+    public List<ObjectNode> searchFilms(@RequestParam String query,
+                                        @RequestParam List<String> by,
+                                        @RequestParam(required = false) List<String> fields) {
+        return service.searchFilms(query, by, fields);
     }
 
     @GetMapping("/common")
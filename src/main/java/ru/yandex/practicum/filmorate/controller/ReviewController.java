@@ -1,6 +1,7 @@
 package ru.yandex.practicum.filmorate.controller;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import ru.yandex.practicum.filmorate.model.Review;
 import ru.yandex.practicum.filmorate.service.ReviewService;
@@ -14,6 +15,8 @@ import java.util.Optional;
 @RequiredArgsConstructor
 public class ReviewController {
 
+    private static final String NEXT_CURSOR_USEFUL_HEADER = "X-Next-Cursor-Useful";
+    private static final String NEXT_CURSOR_ID_HEADER = "X-Next-Cursor-Id";
     private final ReviewService service;
 
     @PostMapping
@@ -36,10 +39,25 @@ public class ReviewController {
         return service.getById(id);
     }
 
+    /**
+     * Отзывы по убыванию полезности. Если страница заполнена целиком, курсор следующей страницы
+     * передается в заголовках X-Next-Cursor-Useful и X-Next-Cursor-Id - их значения нужно
+     * отправить в параметрах afterUseful и afterId.
+     */
     @GetMapping
-    List<Review> getAllOrByFilmId(@RequestParam Optional<Integer> filmId,
-                                  @RequestParam Optional<Integer> count) {
-        return service.getAllOrByFilmId(filmId, count);
+    ResponseEntity<List<Review>> getAllOrByFilmId(@RequestParam Optional<Integer> filmId,
+                                                  @RequestParam Optional<Integer> count,
+                                                  @RequestParam Optional<Integer> afterUseful,
+                                                  @RequestParam Optional<Integer> afterId) {
+        List<Review> reviews = service.getAllOrByFilmId(filmId, count, afterUseful, afterId);
+        if (reviews.size() < count.orElse(10)) {
+            return ResponseEntity.ok(reviews);
+        }
+        Review last = reviews.get(reviews.size() - 1);
+        return ResponseEntity.ok()
+                .header(NEXT_CURSOR_USEFUL_HEADER, String.valueOf(last.getUseful()))
+                .header(NEXT_CURSOR_ID_HEADER, String.valueOf(last.getReviewId()))
+                .body(reviews);
     }
 
     @PutMapping("/{id}/like/{userId}")
@@ -1,15 +1,19 @@
 package ru.yandex.practicum.filmorate.controller;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 import ru.yandex.practicum.filmorate.model.Event;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Recommendations;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.service.EventService;
 import ru.yandex.practicum.filmorate.service.UserService;
 
 import javax.validation.Valid;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.List;
 
 @RestController
@@ -18,6 +22,9 @@ import java.util.List;
 @Validated
 public class UserController {
 
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    private static final String RECOMMENDATIONS_COMPUTED_AT_HEADER = "X-Recommendations-Computed-At";
+    private static final String RECOMMENDATIONS_AGE_HEADER = "X-Recommendations-Age-Ms";
     private final UserService service;
     private final EventService eventService;
 
@@ -31,9 +38,23 @@ public class UserController {
         return service.update(updatedUser);
     }
 
+    /**
+     * Без параметра limit возвращает всех пользователей. С ним - страницу пользователей с id больше after,
+     * а id последнего пользователя полной страницы передается в заголовке X-Next-Cursor.
+     */
     @GetMapping
-    List<User> getAll() {
-        return service.getAll();
+    ResponseEntity<List<User>> getAll(@RequestParam(required = false) Integer limit,
+                                      @RequestParam(defaultValue = "0") int after) {
+        if (limit == null) {
+            return ResponseEntity.ok(service.getAll());
+        }
+        List<User> users = service.getPage(after, limit);
+        if (users.size() < limit) {
+            return ResponseEntity.ok(users);
+        }
+        return ResponseEntity.ok()
+                .header(NEXT_CURSOR_HEADER, String.valueOf(users.get(users.size() - 1).getId()))
+                .body(users);
     }
 
     @GetMapping("/{id}")
@@ -63,15 +84,29 @@ public class UserController {
         return service.getFriendList(id);
     }
 
+    @GetMapping("/{id}/friends/count")
+    int getFriendCount(@PathVariable int id) {
+        return service.getFriendCount(id);
+    }
+
     @GetMapping("/{id}/friends/common/{otherId}")
     List<User> getCommonFriends(@PathVariable int id,
                                 @PathVariable int otherId) {
         return service.getCommonFriends(id, otherId);
     }
 
+    /**
+     * Рекомендации берутся из заранее посчитанных; когда они были посчитаны,
+     * передается в заголовках X-Recommendations-Computed-At и X-Recommendations-Age-Ms.
+     */
     @GetMapping("/{id}/recommendations")
-    public List<Film> getRecommendedFilmForUser(@PathVariable int id) {
-        return service.getRecommendedFilmForUser(id);
+    public ResponseEntity<List<Film>> getRecommendedFilmForUser(@PathVariable int id) {
+        Recommendations recommendations = service.getRecommendedFilmForUser(id);
+        Instant computedAt = recommendations.getComputedAt();
+        return ResponseEntity.ok()
+                .header(RECOMMENDATIONS_COMPUTED_AT_HEADER, computedAt.toString())
+                .header(RECOMMENDATIONS_AGE_HEADER, String.valueOf(Duration.between(computedAt, Instant.now()).toMillis()))
+                .body(recommendations.getFilms());
     }
 
     @DeleteMapping("/{userId}")
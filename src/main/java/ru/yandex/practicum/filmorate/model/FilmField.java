@@ -0,0 +1,48 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Поля фильма, которые можно запросить параметром fields.
+ */
+@Getter
+@RequiredArgsConstructor
+public enum FilmField {
+    ID("id"),
+    NAME("name"),
+    DESCRIPTION("description"),
+    RELEASE_DATE("releaseDate"),
+    DURATION("duration"),
+    MPA("mpa"),
+    GENRES("genres"),
+    DIRECTORS("directors");
+
+    public static final Set<FilmField> ALL = Collections.unmodifiableSet(EnumSet.allOf(FilmField.class));
+
+    private final String jsonName;
+
+    /**
+     * Разбирает имена полей из запроса. id возвращается всегда, без параметра - все поля.
+     */
+    public static Set<FilmField> parse(Collection<String> names) {
+        if (names == null) {
+            return ALL;
+        }
+        Set<FilmField> fields = EnumSet.of(ID);
+        for (String name : names) {
+            fields.add(Arrays.stream(values())
+                    .filter(field -> field.jsonName.equals(name.trim()))
+                    .findFirst()
+                    .orElseThrow(() -> new ValidationException("Неизвестное поле фильма: " + name)));
+        }
+        return fields;
+    }
+}
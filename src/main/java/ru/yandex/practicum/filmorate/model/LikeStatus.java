@@ -0,0 +1,17 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.*;
+
+/**
+ * Краткий ответ на постановку или снятие лайка.
+ */
+@AllArgsConstructor
+@Getter
+@ToString
+@EqualsAndHashCode
+public class LikeStatus {
+
+    private final int filmId;
+    private final int likeCount;
+    private final boolean liked;
+}
@@ -0,0 +1,19 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.*;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Рекомендованные пользователю фильмы и момент, когда они были посчитаны.
+ */
+@AllArgsConstructor
+@Getter
+@ToString
+@EqualsAndHashCode
+public class Recommendations {
+
+    private final List<Film> films;
+    private final Instant computedAt;
+}
@@ -9,8 +9,6 @@ import ru.yandex.practicum.filmorate.storage.director.DirectorsStorage;
 
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -46,26 +44,14 @@ public class DirectorService {
         return director;
     }
 
+    /**
+     * Сохраняет режиссеров фильма. Перед вызовом они должны быть проверены {@link #checkAndSetDirectorsTo(Film)}.
+     */
     public void handleDirectorsWhenCreateAndUpdateFilm(Film film) {
-        checkAndSetDirectorsTo(film);
-        directorsStorage.deleteDirectorsFrom(film);
-        directorsStorage.saveDirectorsFor(film);
+        directorsStorage.updateDirectorsFor(film);
     }
 
-    public void handleDirectorsWhenGetFilm(Film film) {
-        List<Director> directors = directorsStorage.getFilmDirectors(film);
-
-        film.setDirectors(new HashSet<>(directors));
-    }
-
-    public void handleDirectorsWhenGetListFilms(List<Film> films) {
-        Map<Integer, HashSet<Director>> filmsAndDirectors = directorsStorage.getDirectorsForFilms(films);
-        films.stream()
-                .peek(film -> film.setDirectors(filmsAndDirectors.get(film.getId())))
-                .collect(Collectors.toList());
-    }
-
-    private void checkAndSetDirectorsTo(Film film) {
+    public void checkAndSetDirectorsTo(Film film) {
         /*
         если режиссеры не были указаны
          */
@@ -74,31 +60,16 @@ public class DirectorService {
             return;
         }
         /*
-         * Хеш-таблица вида:
-         * Ключ - id известного режиссера
-         * Значение - имя известного режиссера, соответствующего id
-         */
-        Map<Integer, String> allDirectors = getAll().stream()
-                .collect(Collectors.toMap(Director::getId, Director::getName));
-        /*
-           Список id режиссеров у пришедшего фильма
-         */
-        List<Integer> filmDirectorsIds = film.getDirectors().stream()
-                .map(Director::getId)
-                .collect(Collectors.toList());
-        /*
-           Множество, которое будет установлено в поле к фильму
+           Множество, которое будет установлено в поле к фильму.
+           Режиссеры берутся из кэша по id, без загрузки полного списка
          */
         HashSet<Director> directors = new HashSet<>();
 
-        for (Integer directorId : filmDirectorsIds) {
-            if (!allDirectors.containsKey(directorId))
-                throw new NotFoundException("Не добавлен режиссер с id = " + directorId);
-
-            Director director = new Director();
+        for (Director filmDirector : film.getDirectors()) {
+            int directorId = filmDirector.getId();
+            Director director = directorsStorage.getDirectorById(directorId)
+                    .orElseThrow(() -> new NotFoundException("Не добавлен режиссер с id = " + directorId));
 
-            director.setId(directorId);
-            director.setName(allDirectors.get(directorId));
             directors.add(director);
         }
         film.setDirectors(directors);
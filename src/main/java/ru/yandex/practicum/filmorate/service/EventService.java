@@ -20,7 +20,7 @@ public class EventService {
     private final UserStorage userStorage;
 
     @Autowired
-    public EventService(@Qualifier("DbEventStorage") EventStorage eventStorage,
+    public EventService(@Qualifier("QueuedEventStorage") EventStorage eventStorage,
                         @Qualifier("DbUserStorage") UserStorage userStorage) {
         this.log = LoggerFactory.getLogger("EventService");
         this.eventStorage = eventStorage;
@@ -49,6 +49,6 @@ public class EventService {
     }
 
     private void checkIdForPresentsInUserDb(int id) {
-        userStorage.getById(id); //этот метод отправляет ошибку, если нет пользователя
+        userStorage.checkExists(id); //этот метод отправляет ошибку, если нет пользователя
     }
 }
@@ -1,18 +1,32 @@
 package ru.yandex.practicum.filmorate.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
 import ru.yandex.practicum.filmorate.model.Director;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmField;
+import ru.yandex.practicum.filmorate.model.LikeStatus;
 import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.film.FilmTrendingIndex;
 import ru.yandex.practicum.filmorate.storage.user.UserStorage;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
 import java.time.LocalDate;
-import java.util.Comparator;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
@@ -21,81 +35,189 @@ public class FilmService {
 
     private static final LocalDate CINEMA_STARTING_POINT = LocalDate.of(1895, 12, 28);
     private static final String FILM_NOT_FOUND = "Фильм с ID: '%s' не найден";
-    private static final String USER_NOT_FOUND = "Пользователь с ID: '%s' не найден";
+    private static final int BATCH_CHUNK_SIZE = 1000;
+    static final int DEFAULT_MAX_LIMIT = 1000;
+    /**
+     * Окна трендов, которые ведет {@link FilmTrendingIndex}, по имени в запросе:
+     * в днях (1d, 7d, 30d) и те же окна в часах (24h, 168h, 720h).
+     */
+    private static final Map<String, Duration> TRENDING_WINDOWS = trendingWindows();
     @Qualifier("DbFilmStorage")
     private final FilmStorage filmStorage;
     @Qualifier("DbUserStorage")
     private final UserStorage userStorage;
     private final EventService eventService;
     private final DirectorService directorService;
+    private final ObjectMapper objectMapper;
+    private final LikeWriteBuffer likeBuffer;
+    /**
+     * Наибольший размер страницы. Задается полем, а не через конструктор, чтобы сервис,
+     * собранный вручную, получал значение по умолчанию.
+     */
+    @Value("${filmorate.paging.max-limit:" + DEFAULT_MAX_LIMIT + "}")
+    private int maxLimit = DEFAULT_MAX_LIMIT;
 
-    public Film getById(int id) {
-        if (filmStorage.isExists(id)) {
-            Film film = filmStorage.getById(id);
-            directorService.handleDirectorsWhenGetFilm(film);
-            return film;
-        } else {
-            throw new NotFoundException(String.format(FILM_NOT_FOUND, id));
-        }
+    /**
+     * Фильм с полями из fieldNames, без них - со всеми полями. Фильм целиком берется из кэша,
+     * поэтому здесь поля влияют лишь на ответ.
+     */
+    public ObjectNode getById(int id, List<String> fieldNames) {
+        return project(getById(id), FilmField.parse(fieldNames));
+    }
+
+    private Film getById(int id) {
+        Film film = filmStorage.getById(id);
+        likeBuffer.applyPending(List.of(film));
+        return film;
     }
 
     public Film addLike(int id, int userId) {
-        if (!filmStorage.isExists(id)) {
-            throw new NotFoundException(String.format(FILM_NOT_FOUND, id));
-        }
-        if (!userStorage.isExists(userId)) {
-            throw new NotFoundException(String.format(USER_NOT_FOUND, userId));
-        }
+        changeLike(id, userId, true);
+        return getById(id);
+    }
 
-        Film filmInReturningCondition = filmStorage.addLike(id, userId);
+    public LikeStatus addLikeStatus(int id, int userId) {
+        return changeLike(id, userId, true);
+    }
 
-        eventService.addEvent("LIKE", "ADD", userId, id);
+    public Film removeLike(int id, int userId) {
+        changeLike(id, userId, false);
+        return getById(id);
+    }
 
-        return filmInReturningCondition;
+    public LikeStatus removeLikeStatus(int id, int userId) {
+        return changeLike(id, userId, false);
     }
 
-    public Film removeLike(int id, int userId) {
+    private LikeStatus changeLike(int id, int userId, boolean liked) {
         if (!filmStorage.isExists(id)) {
             throw new NotFoundException(String.format(FILM_NOT_FOUND, id));
         }
-        if (!userStorage.isExists(userId)) {
-            throw new NotFoundException(String.format(USER_NOT_FOUND, userId));
+        userStorage.checkExists(userId);
+
+        if (likeBuffer.isEnabled()) {
+            if (liked) {
+                likeBuffer.addLike(id, userId);
+            } else {
+                likeBuffer.removeLike(id, userId);
+            }
+            return new LikeStatus(id, likeBuffer.getLikeCount(id), liked);
         }
 
-        Film filmInReturningCondition = filmStorage.removeLike(id, userId);
+        LikeStatus status = liked ? filmStorage.addLike(id, userId) : filmStorage.removeLike(id, userId);
 
-        eventService.addEvent("LIKE", "REMOVE", userId, id);
+        eventService.addEvent("LIKE", liked ? "ADD" : "REMOVE", userId, id);
 
-        return filmInReturningCondition;
+        return status;
     }
 
-    public List<Film> getPopular(int count, Integer genreId, Integer year) {
-        if (filmStorage.getAll().isEmpty()) {
-            throw new NotFoundException("Список фильмов пуст");
-        } else {
-            List<Film> films = filmStorage.getPopular(count, genreId, year);
-            directorService.handleDirectorsWhenGetListFilms(films);
-            return films;
+    public List<ObjectNode> getPopular(int count, Integer genreId, Integer year, List<String> fieldNames) {
+        Set<FilmField> fields = FilmField.parse(fieldNames);
+        return project(checkNotEmpty(filmStorage.getPopular(count, genreId, year, fields)), fields);
+    }
+
+    /**
+     * Фильмы, набравшие больше всего лайков за последнее время.
+     * Окно задается как число часов или дней, например 24h или 7d.
+     */
+    public List<Film> getTrending(String window, int count, Integer genreId, Integer year) {
+        validateLimit(count);
+        return filmStorage.getTrending(parseWindow(window), count, genreId, year);
+    }
+
+    private static Duration parseWindow(String window) {
+        Duration duration = TRENDING_WINDOWS.get(window.trim());
+        if (duration == null) {
+            throw new ValidationException("Окно трендов должно быть одним из: "
+                    + String.join(", ", TRENDING_WINDOWS.keySet()) + ", получено: " + window);
         }
+        return duration;
     }
 
-    public List<Film> getAll() {
-        List<Film> films = filmStorage.getAll();
-        directorService.handleDirectorsWhenGetListFilms(films);
+    private static Map<String, Duration> trendingWindows() {
+        Map<String, Duration> windows = new LinkedHashMap<>();
+        FilmTrendingIndex.WINDOWS.forEach(window -> windows.put(window.toDays() + "d", window));
+        FilmTrendingIndex.WINDOWS.forEach(window -> windows.put(window.toHours() + "h", window));
+        return windows;
+    }
+
+    private List<Film> checkNotEmpty(List<Film> films) {
+        if (films.isEmpty() && filmStorage.getPopular(1, null, null, Set.of(FilmField.ID)).isEmpty()) {
+            throw new NotFoundException("Список фильмов пуст");
+        }
         return films;
     }
 
+    public List<ObjectNode> getAll(List<String> fieldNames) {
+        Set<FilmField> fields = FilmField.parse(fieldNames);
+        return project(filmStorage.getAll(fields), fields);
+    }
+
+    public List<ObjectNode> getPage(int afterId, int limit, List<String> fieldNames) {
+        validateLimit(limit);
+        Set<FilmField> fields = FilmField.parse(fieldNames);
+        return project(filmStorage.getPage(afterId, limit, fields), fields);
+    }
+
+    private void validateLimit(int limit) {
+        if (limit <= 0) {
+            throw new ValidationException("Размер страницы должен быть больше нуля");
+        }
+        if (limit > maxLimit) {
+            throw new ValidationException("Размер страницы не может быть больше " + maxLimit);
+        }
+    }
+
+    /**
+     * Пишет весь каталог в формате NDJSON: по одному фильму с числом лайков на строку.
+     */
+    public void exportAll(OutputStream out) {
+        filmStorage.exportAll((film, likeCount) -> {
+            ObjectNode node = objectMapper.valueToTree(film);
+            node.put("likeCount", likeCount);
+            try {
+                out.write(objectMapper.writeValueAsBytes(node));
+                out.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException("Ошибка выгрузки фильма с ID: " + film.getId(), e);
+            }
+        });
+    }
+
+    @Transactional
     public Film create(Film film) {
         validateReleaseDate(film);
+        directorService.checkAndSetDirectorsTo(film);
         filmStorage.create(film);
         directorService.handleDirectorsWhenCreateAndUpdateFilm(film);
         return film;
     }
 
+    /**
+     * Массово создает фильмы. Все фильмы проверяются заранее, затем сохраняются
+     * пачками по BATCH_CHUNK_SIZE в одной транзакции: если не сохранилась любая из пачек,
+     * не создается ни один фильм. Возвращает id созданных фильмов в порядке входного списка.
+     */
+    @Transactional
+    public List<Integer> createBatch(List<Film> films) {
+        for (Film film : films) {
+            validateReleaseDate(film);
+            directorService.checkAndSetDirectorsTo(film);
+        }
+        List<Integer> ids = new ArrayList<>(films.size());
+        for (int from = 0; from < films.size(); from += BATCH_CHUNK_SIZE) {
+            int to = Math.min(from + BATCH_CHUNK_SIZE, films.size());
+            ids.addAll(filmStorage.createAll(films.subList(from, to)));
+        }
+        return ids;
+    }
+
+    @Transactional
     public Film update(Film film) {
         validateReleaseDate(film);
         int id = film.getId();
         if (filmStorage.isExists(id)) {
+            directorService.checkAndSetDirectorsTo(film);
             filmStorage.update(film);
             directorService.handleDirectorsWhenCreateAndUpdateFilm(film);
             return getById(film.getId());
@@ -104,6 +226,27 @@ public class FilmService {
         }
     }
 
+    /**
+     * Единственное место, где фильм превращается в ответ: в JSON остаются только поля из fields.
+     * Лайки в ответ не попадают, поэтому списки читаются без них.
+     */
+    private List<ObjectNode> project(List<Film> films, Set<FilmField> fields) {
+        return films.stream()
+                .map(film -> project(film, fields))
+                .collect(Collectors.toList());
+    }
+
+    private ObjectNode project(Film film, Set<FilmField> fields) {
+        ObjectNode node = objectMapper.valueToTree(film);
+        if (fields == FilmField.ALL) {
+            return node;
+        }
+        node.retain(fields.stream()
+                .map(FilmField::getJsonName)
+                .collect(Collectors.toList()));
+        return node;
+    }
+
     private void validateReleaseDate(Film film) {
         if (film.getReleaseDate() == null) {
             throw new ValidationException("Дата релиза должна быть передана в запросе");
@@ -114,58 +257,51 @@ public class FilmService {
     }
 
     public Film deleteFilmById(int id) {
-        if (filmStorage.isExists(id)) {
-            return filmStorage.deleteFilmById(id);
-        } else {
-            throw new NotFoundException(String.format(FILM_NOT_FOUND, id));
-        }
+        return filmStorage.deleteFilmById(id);
     }
 
-    public List<Film> getFilmsByDirector(int directorId, String sort) {
+    /**
+     * Фильмы режиссера, отсортированные по лайкам или году выхода. Без limit возвращаются все фильмы.
+     */
+    public List<ObjectNode> getFilmsByDirector(int directorId, String sort, Integer limit, int offset,
+                                               List<String> fieldNames) {
+        validatePaging(limit, offset);
+        Set<FilmField> fields = FilmField.parse(fieldNames);
         Director director = directorService.getById(directorId);
-        List<Film> directorFilms = filmStorage.getFilmsByDirector(director);
-        directorService.handleDirectorsWhenGetListFilms(directorFilms);
-        if (sort.equals("year")) {
-            directorFilms = directorFilms.stream()
-                    .sorted(new Comparator<Film>() {
-                        @Override
-                        public int compare(Film o1, Film o2) {
-                            return o1.getReleaseDate().getYear() - o2.getReleaseDate().getYear();
-                        }
-                    })
-                    .collect(Collectors.toList());
-        } else {
-            directorFilms = directorFilms.stream()
-                    .sorted(new Comparator<Film>() {
-                        @Override
-                        public int compare(Film o1, Film o2) {
-                            return o1.getLikes().size() - o2.getLikes().size();
-                        }
-                    })
-                    .collect(Collectors.toList());
+        return project(filmStorage.getFilmsByDirector(director, sort, limitOrAll(limit), offset, fields), fields);
+    }
+
+    private void validatePaging(Integer limit, int offset) {
+        if (limit != null) {
+            validateLimit(limit);
+        }
+        if (offset < 0) {
+            throw new ValidationException("Смещение не может быть отрицательным");
         }
-        System.out.println(directorFilms);
-        return directorFilms;
     }
 
-    public List<Film> searchFilms(String query, List<String> by) {
+    private static int limitOrAll(Integer limit) {
+        return limit == null ? Integer.MAX_VALUE : limit;
+    }
+
+    public List<ObjectNode> searchFilms(String query, List<String> by, List<String> fieldNames) {
+        validateSearchScope(by);
+        Set<FilmField> fields = FilmField.parse(fieldNames);
+        return project(filmStorage.searchFilms(by.contains("title"), by.contains("director"), query, fields),
+                fields);
+    }
+
+    private void validateSearchScope(List<String> by) {
         boolean searchByTitle = by.contains("title");
         boolean searchByDirector = by.contains("director");
 
         if (by.isEmpty() || by.size() > 2 || (!searchByTitle && !searchByDirector)) {
             throw new ValidationException("Неправельный запрос области поиска");
         }
-
-        return filmStorage.searchFilms(searchByTitle, searchByDirector, query);
     }
 
     public List<Film> getCommonFilms(int userId, int friendId) {
-        if (!userStorage.isExists(userId)) {
-            throw new NotFoundException(USER_NOT_FOUND + userId);
-        } else if (!userStorage.isExists(friendId)) {
-            throw new NotFoundException(USER_NOT_FOUND + friendId);
-        } else {
-            return filmStorage.getCommonFilms(userId, friendId);
-        }
+        userStorage.checkExists(userId, friendId);
+        return filmStorage.getCommonFilms(userId, friendId);
     }
 }
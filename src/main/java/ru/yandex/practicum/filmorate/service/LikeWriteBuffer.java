@@ -0,0 +1,225 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Event;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.storage.event.EventStorage;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Буфер отложенной записи лайков.
+ * Лайки и их снятие копятся в памяти: для каждой пары (фильм, пользователь) хранится только
+ * последняя операция, так что лайк и его отмена до сброса гасят друг друга. События ленты
+ * копятся в порядке поступления. Буфер сбрасывается в LIKES и FEEDS пачкой - при достижении
+ * flush-size операций, раз в flush-interval-ms и при остановке приложения.
+ * Прием операции и остановка разделяют одну блокировку: после остановки операция уже
+ * не может попасть в буфер, который никто не сбросит, и пишется в хранилище сразу.
+ * Пока режим выключен, буфер не используется и FilmService пишет лайки сразу.
+ */
+@Slf4j
+@Component
+public class LikeWriteBuffer {
+
+    private final FilmStorage filmStorage;
+    private final EventStorage eventStorage;
+    private final boolean enabled;
+    private final int flushSize;
+    private final long flushIntervalMs;
+    private final Map<Like, Boolean> pending = new ConcurrentHashMap<>();
+    private final Deque<Event> events = new ConcurrentLinkedDeque<>();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile boolean stopped;
+    private ScheduledExecutorService executor;
+
+    public LikeWriteBuffer(@Qualifier("DbFilmStorage") FilmStorage filmStorage,
+                           @Qualifier("DbEventStorage") EventStorage eventStorage,
+                           @Value("${filmorate.likes.write-behind.enabled:false}") boolean enabled,
+                           @Value("${filmorate.likes.write-behind.flush-size:500}") int flushSize,
+                           @Value("${filmorate.likes.write-behind.flush-interval-ms:200}") long flushIntervalMs) {
+        this.filmStorage = filmStorage;
+        this.eventStorage = eventStorage;
+        this.enabled = enabled;
+        this.flushSize = flushSize;
+        this.flushIntervalMs = flushIntervalMs;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "like-write-buffer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+        log.info("Включена отложенная запись лайков: пачка {}, интервал {} мс", flushSize, flushIntervalMs);
+    }
+
+    /**
+     * Закрывает буфер для новых операций и записывает то, что в нем накопилось.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        lock.writeLock().lock();
+        try {
+            if (executor == null || stopped) {
+                return;
+            }
+            stopped = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        executor.shutdown();
+        executor.awaitTermination(flushIntervalMs + TimeUnit.SECONDS.toMillis(10), TimeUnit.MILLISECONDS);
+        flush();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void addLike(int filmId, int userId) {
+        accept(filmId, userId, true, "ADD");
+    }
+
+    public void removeLike(int filmId, int userId) {
+        accept(filmId, userId, false, "REMOVE");
+    }
+
+    /**
+     * Накладывает еще не записанные операции на лайки переданных фильмов.
+     */
+    public void applyPending(Collection<Film> films) {
+        if (pending.isEmpty() || films.isEmpty()) {
+            return;
+        }
+        Map<Integer, List<Map.Entry<Like, Boolean>>> byFilm = new HashMap<>();
+        for (Map.Entry<Like, Boolean> entry : pending.entrySet()) {
+            byFilm.computeIfAbsent(entry.getKey().getFilmId(), id -> new ArrayList<>()).add(entry);
+        }
+        for (Film film : films) {
+            for (Map.Entry<Like, Boolean> entry : byFilm.getOrDefault(film.getId(), Collections.emptyList())) {
+                if (entry.getValue()) {
+                    film.getLikes().add(entry.getKey().getUserId());
+                } else {
+                    film.getLikes().remove(entry.getKey().getUserId());
+                }
+            }
+        }
+    }
+
+    /**
+     * Число лайков фильма с учетом еще не записанных операций. Операция меняет счетчик,
+     * только если расходится с тем, что уже записано, поэтому повторный лайк и операция,
+     * которую сброс уже записал, но еще не убрал из буфера, не учитываются дважды.
+     */
+    public int getLikeCount(int filmId) {
+        int count = filmStorage.getLikeCount(filmId);
+        for (Map.Entry<Like, Boolean> entry : pending.entrySet()) {
+            Like like = entry.getKey();
+            if (like.getFilmId() != filmId) {
+                continue;
+            }
+            boolean stored = filmStorage.hasLike(filmId, like.getUserId());
+            if (entry.getValue() && !stored) {
+                count++;
+            } else if (!entry.getValue() && stored) {
+                count--;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Записывает накопленные лайки и события. Операция, изменившаяся во время записи,
+     * остается в буфере до следующего сброса; при ошибке все остается в буфере.
+     */
+    public synchronized void flush() {
+        flushRequested.set(false);
+        Map<Like, Boolean> snapshot = new HashMap<>(pending);
+        List<Event> batch = new ArrayList<>();
+        for (Event event = events.poll(); event != null; event = events.poll()) {
+            batch.add(event);
+        }
+        try {
+            if (!snapshot.isEmpty()) {
+                List<Like> added = new ArrayList<>();
+                List<Like> removed = new ArrayList<>();
+                snapshot.forEach((like, liked) -> (liked ? added : removed).add(like));
+                filmStorage.addLikes(added);
+                filmStorage.removeLikes(removed);
+                snapshot.forEach(pending::remove);
+            }
+            if (!batch.isEmpty()) {
+                eventStorage.addEvents(batch);
+            }
+        } catch (RuntimeException e) {
+            // события возвращаются в начало очереди, лайки и так остались в буфере
+            for (int i = batch.size() - 1; i >= 0; i--) {
+                events.offerFirst(batch.get(i));
+            }
+            throw e;
+        }
+        log.debug("Сброшено лайков: {}, событий: {}", snapshot.size(), batch.size());
+    }
+
+    private void accept(int filmId, int userId, boolean liked, String operation) {
+        Event event = Event.builder()
+                .userId(userId)
+                .entityId(filmId)
+                .timestamp(Instant.now().toEpochMilli())
+                .eventType("LIKE")
+                .operation(operation)
+                .build();
+        lock.readLock().lock();
+        try {
+            if (executor != null && !stopped) {
+                pending.put(new Like(filmId, userId), liked);
+                events.add(event);
+                if (pending.size() >= flushSize && flushRequested.compareAndSet(false, true)) {
+                    executor.execute(this::flushQuietly);
+                }
+                return;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        writeThrough(filmId, userId, liked, event);
+    }
+
+    /**
+     * Пишет операцию сразу, когда буфер не запущен или уже остановлен.
+     */
+    private void writeThrough(int filmId, int userId, boolean liked, Event event) {
+        if (liked) {
+            filmStorage.addLike(filmId, userId);
+        } else {
+            filmStorage.removeLike(filmId, userId);
+        }
+        eventStorage.addEvents(List.of(event));
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.error("Ошибка отложенной записи лайков", e);
+        }
+    }
+}
@@ -3,6 +3,7 @@ package ru.yandex.practicum.filmorate.service;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
 import ru.yandex.practicum.filmorate.model.Review;
 import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
 import ru.yandex.practicum.filmorate.storage.review.ReviewStorage;
@@ -33,8 +34,6 @@ public class ReviewService {
     }
 
     public Review update(Review review) {
-        checkReview(review.getReviewId());
-
         Review reviewInReturningCondition = reviewStorage.update(review);
 
         eventService.addEvent("REVIEW", "UPDATE",
@@ -44,9 +43,7 @@ public class ReviewService {
     }
 
     public boolean remove(int id) {
-        checkReview(id);
-
-        Review review = getById(id);
+        Review review = reviewStorage.getById(id);
 
         boolean wasRemoved = reviewStorage.remove(id);
 
@@ -57,51 +54,58 @@ public class ReviewService {
     }
 
     public Review getById(int id) {
-        checkReview(id);
         return reviewStorage.getById(id);
     }
 
-    public List<Review> getAllOrByFilmId(Optional<Integer> oFilmId, Optional<Integer> oCount) {
+    /**
+     * Отзывы по убыванию полезности. С курсором (afterUseful, afterId) - следующая страница
+     * после отзыва с такими полезностью и id.
+     */
+    public List<Review> getAllOrByFilmId(Optional<Integer> oFilmId, Optional<Integer> oCount,
+                                         Optional<Integer> oAfterUseful, Optional<Integer> oAfterId) {
         int filmId = oFilmId.orElse(0);
         int count = oCount.orElse(10);
-        if (filmId == 0) {
-            return reviewStorage.get(count);
-        } else {
+        if (count <= 0) {
+            throw new ValidationException("Количество отзывов должно быть больше нуля");
+        }
+        if (oAfterUseful.isPresent() != oAfterId.isPresent()) {
+            throw new ValidationException("Параметры afterUseful и afterId передаются вместе");
+        }
+        if (filmId != 0) {
             checkFilm(filmId);
-            return reviewStorage.getByFilmId(filmId, count);
         }
+        if (oAfterUseful.isEmpty()) {
+            return filmId == 0 ? reviewStorage.get(count) : reviewStorage.getByFilmId(filmId, count);
+        }
+        int afterUseful = oAfterUseful.get();
+        int afterId = oAfterId.get();
+        return filmId == 0
+                ? reviewStorage.getPage(afterUseful, afterId, count)
+                : reviewStorage.getPageByFilmId(filmId, afterUseful, afterId, count);
     }
 
     public Review setLike(int id, int userId) {
-        check(id, userId);
+        checkUser(userId);
         return reviewStorage.setLike(id, userId);
     }
 
     public Review setDislike(int id, int userId) {
-        check(id, userId);
+        checkUser(userId);
         return reviewStorage.setDislike(id, userId);
     }
 
     public boolean removeLike(int id, int userId) {
-        check(id, userId);
+        checkUser(userId);
         return reviewStorage.removeLike(id, userId);
     }
 
     public boolean removeDislike(int id, int userId) {
-        check(id, userId);
+        checkUser(userId);
         return reviewStorage.removeDislike(id, userId);
     }
 
-    private void checkReview(int id) {
-        if (!reviewStorage.isExists(id)) {
-            throw new NotFoundException(String.format("Отзыв с ID: '%s' не найден", id));
-        }
-    }
-
     private void checkUser(int userId) {
-        if (!userStorage.isExists(userId)) {
-            throw new NotFoundException(String.format("Пользователь с ID: '%s' не найден", userId));
-        }
+        userStorage.checkExists(userId);
     }
 
     private void checkFilm(int filmId) {
@@ -109,9 +113,4 @@ public class ReviewService {
             throw new NotFoundException(String.format("Фильм с ID: '%s' не найден", filmId));
         }
     }
-
-    private void check(int id, int userId) {
-        checkUser(userId);
-        checkReview(id);
-    }
 }
@@ -3,10 +3,10 @@ package ru.yandex.practicum.filmorate.service;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
-import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Recommendations;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.storage.user.UserStorage;
 
@@ -15,11 +15,16 @@ import java.util.List;
 @Service
 public class UserService {
 
-    private static final String USER_NOT_FOUND = "Пользователь с ID: '%s' не найден";
     private final UserStorage storage;
 
     private final EventService eventService;
 
+    /**
+     * Наибольший размер страницы, общий с FilmService.
+     */
+    @Value("${filmorate.paging.max-limit:" + FilmService.DEFAULT_MAX_LIMIT + "}")
+    private int maxLimit = FilmService.DEFAULT_MAX_LIMIT;
+
     @Autowired
     public UserService(
             @Qualifier("DbUserStorage") UserStorage storage, EventService eventService) {
@@ -28,20 +33,11 @@ public class UserService {
     }
 
     public User getById(int id) {
-        if (storage.isExists(id)) {
-            return storage.getById(id);
-        } else {
-            throw new NotFoundException(String.format(USER_NOT_FOUND, id));
-        }
+        return storage.getById(id);
     }
 
     public User addToFriends(int userId, int friendId) {
-        if (!storage.isExists(userId)) {
-            throw new NotFoundException(String.format(USER_NOT_FOUND, userId));
-        }
-        if (!storage.isExists(friendId)) {
-            throw new NotFoundException(String.format(USER_NOT_FOUND, friendId));
-        }
+        storage.checkExists(userId, friendId);
 
         User userInReturningCondition = storage.addToFriends(userId, friendId);
 
@@ -51,12 +47,7 @@ public class UserService {
     }
 
     public User removeFromFriends(int userId, int friendId) {
-        if (!storage.isExists(userId)) {
-            throw new NotFoundException(String.format(USER_NOT_FOUND, userId));
-        }
-        if (!storage.isExists(friendId)) {
-            throw new NotFoundException(String.format(USER_NOT_FOUND, friendId));
-        }
+        storage.checkExists(userId, friendId);
 
         User userInReturningCondition = storage.removeFromFriends(userId, friendId);
 
@@ -66,20 +57,17 @@ public class UserService {
     }
 
     public List<User> getFriendList(int id) {
-        if (!storage.isExists(id)) {
-            throw new NotFoundException(String.format(USER_NOT_FOUND, id));
-        } else {
-            return storage.getFriendList(id);
-        }
+        storage.checkExists(id);
+        return storage.getFriendList(id);
+    }
+
+    public int getFriendCount(int id) {
+        storage.checkExists(id);
+        return storage.getFriendCount(id);
     }
 
     public List<User> getCommonFriends(int id, int otherId) {
-        if (!storage.isExists(id)) {
-            throw new NotFoundException(String.format(USER_NOT_FOUND, id));
-        }
-        if (!storage.isExists(otherId)) {
-            throw new NotFoundException(String.format(USER_NOT_FOUND, otherId));
-        }
+        storage.checkExists(id, otherId);
         return storage.getCommonFriends(id, otherId);
     }
 
@@ -87,6 +75,16 @@ public class UserService {
         return storage.getAll();
     }
 
+    public List<User> getPage(int afterId, int limit) {
+        if (limit <= 0) {
+            throw new ValidationException("Размер страницы должен быть больше нуля");
+        }
+        if (limit > maxLimit) {
+            throw new ValidationException("Размер страницы не может быть больше " + maxLimit);
+        }
+        return storage.getPage(afterId, limit);
+    }
+
     public User create(User user) {
         validate(user);
         return storage.create(user);
@@ -97,10 +95,8 @@ public class UserService {
         return storage.update(user);
     }
 
-    public List<Film> getRecommendedFilmForUser(int targetUserId) {
-        if (!storage.isExists(targetUserId)) {
-            throw new NotFoundException(String.format(USER_NOT_FOUND, targetUserId));
-        }
+    public Recommendations getRecommendedFilmForUser(int targetUserId) {
+        storage.checkExists(targetUserId);
         return storage.getRecommendedFilmForUser(targetUserId);
     }
 
@@ -114,10 +110,6 @@ public class UserService {
     }
 
     public User deleteUserById(int id) {
-        if (storage.isExists(id)) {
-            return storage.deleteUserById(id);
-        } else {
-            throw new NotFoundException(String.format(USER_NOT_FOUND, id));
-        }
+        return storage.deleteUserById(id);
     }
 }
\ No newline at end of file
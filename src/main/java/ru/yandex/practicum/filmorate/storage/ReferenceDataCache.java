@@ -0,0 +1,92 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+
+import javax.annotation.PostConstruct;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Кэш справочных данных: рейтингов, жанров и режиссеров.
+ * Рейтинги и жанры загружаются один раз при старте, режиссеры перечитываются
+ * после каждого изменения. Фильмы ссылаются на общие экземпляры из кэша.
+ */
+@Component
+@RequiredArgsConstructor
+public class ReferenceDataCache {
+
+    private final JdbcOperations jdbcTemplate;
+    private volatile Map<Integer, Mpa> mpas = Collections.emptyMap();
+    private volatile Map<Integer, Genre> genres = Collections.emptyMap();
+    private volatile Map<Integer, Director> directors;
+
+    @PostConstruct
+    public void load() {
+        mpas = toMap(jdbcTemplate.query("SELECT * FROM MPAS ORDER BY MPA_ID;", StorageUtils::mpaMapRow),
+                Mpa::getId);
+        genres = toMap(jdbcTemplate.query("SELECT * FROM GENRES ORDER BY GENRE_ID;", (rs, rowNum) ->
+                Genre.builder()
+                        .id(rs.getInt("GENRE_ID"))
+                        .name(rs.getString("NAME"))
+                        .build()), Genre::getId);
+        directors = null;
+    }
+
+    public Mpa getMpa(int id) {
+        return mpas.get(id);
+    }
+
+    public List<Mpa> getMpas() {
+        return new ArrayList<>(mpas.values());
+    }
+
+    public Genre getGenre(int id) {
+        return genres.get(id);
+    }
+
+    public List<Genre> getGenres() {
+        return new ArrayList<>(genres.values());
+    }
+
+    public Director getDirector(int id) {
+        return loadDirectors().get(id);
+    }
+
+    public List<Director> getDirectors() {
+        return new ArrayList<>(loadDirectors().values());
+    }
+
+    /**
+     * Сбрасывает режиссеров: при следующем обращении они будут перечитаны из базы.
+     */
+    public synchronized void invalidateDirectors() {
+        directors = null;
+    }
+
+    private Map<Integer, Director> loadDirectors() {
+        Map<Integer, Director> current = directors;
+        if (current == null) {
+            synchronized (this) {
+                current = directors;
+                if (current == null) {
+                    current = toMap(jdbcTemplate.query("SELECT * FROM DIRECTORS ORDER BY DIRECTOR_ID;",
+                            StorageUtils::directorMapRow), Director::getId);
+                    directors = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    private static <T> Map<Integer, T> toMap(List<T> values, Function<T, Integer> idGetter) {
+        return Collections.unmodifiableMap(values.stream()
+                .collect(Collectors.toMap(idGetter, Function.identity(), (first, second) -> first,
+                        LinkedHashMap::new)));
+    }
+}
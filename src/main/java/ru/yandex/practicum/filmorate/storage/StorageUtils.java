@@ -1,8 +1,6 @@
 package ru.yandex.practicum.filmorate.storage;
 
 import lombok.experimental.UtilityClass;
-import org.springframework.jdbc.core.JdbcOperations;
-import org.springframework.jdbc.support.rowset.SqlRowSet;
 import ru.yandex.practicum.filmorate.model.Director;
 import ru.yandex.practicum.filmorate.model.Mpa;
 
@@ -12,17 +10,12 @@ import java.sql.SQLException;
 @UtilityClass
 public class StorageUtils {
 
-    public static Mpa makeMpa(JdbcOperations jdbcTemplate, int id) {
-        String query = "SELECT * FROM MPAS WHERE MPA_ID=?;";
-        SqlRowSet mpaRows = jdbcTemplate.queryForRowSet(query, id);
-        if (mpaRows.next()) {
-            return Mpa.builder()
-                    .id(mpaRows.getInt("MPA_ID"))
-                    .name(mpaRows.getString("NAME"))
-                    .description(mpaRows.getString("DESCRIPTION"))
-                    .build();
-        }
-        return null;
+    public static Mpa mpaMapRow(ResultSet rs, int rowNum) throws SQLException {
+        return Mpa.builder()
+                .id(rs.getInt("MPA_ID"))
+                .name(rs.getString("NAME"))
+                .description(rs.getString("DESCRIPTION"))
+                .build();
     }
 
     public static Director directorMapRow(ResultSet rs, int rowNum) throws SQLException {
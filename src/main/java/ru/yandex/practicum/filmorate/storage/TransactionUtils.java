@@ -0,0 +1,34 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import lombok.experimental.UtilityClass;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+@UtilityClass
+public class TransactionUtils {
+
+    /**
+     * Выполняет действие над кэшами и индексами в памяти после фиксации текущей транзакции,
+     * а вне транзакции - сразу. При откате транзакции действие не выполняется, так что
+     * структуры в памяти не расходятся с базой.
+     */
+    public static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    /**
+     * Возвращает true, если текущий поток выполняется внутри транзакции.
+     */
+    public static boolean inTransaction() {
+        return TransactionSynchronizationManager.isActualTransactionActive();
+    }
+}
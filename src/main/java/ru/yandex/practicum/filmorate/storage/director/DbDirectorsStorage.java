@@ -6,11 +6,13 @@ import org.springframework.jdbc.core.namedparam.NamedParameterJdbcOperations;
 import org.springframework.jdbc.core.namedparam.SqlParameterSource;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
-import org.springframework.jdbc.support.rowset.SqlRowSet;
 import org.springframework.stereotype.Repository;
 import ru.yandex.practicum.filmorate.model.Director;
 import ru.yandex.practicum.filmorate.model.Film;
-import ru.yandex.practicum.filmorate.storage.StorageUtils;
+import ru.yandex.practicum.filmorate.storage.ReferenceDataCache;
+import ru.yandex.practicum.filmorate.storage.TransactionUtils;
+import ru.yandex.practicum.filmorate.storage.film.FilmCache;
+import ru.yandex.practicum.filmorate.storage.film.FilmSearchIndex;
 
 import java.util.*;
 import java.util.stream.Collectors;
@@ -19,6 +21,9 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class DbDirectorsStorage implements DirectorsStorage {
     private final NamedParameterJdbcOperations jdbcOperations;
+    private final FilmSearchIndex searchIndex;
+    private final ReferenceDataCache referenceData;
+    private final FilmCache filmCache;
 
     private static MapSqlParameterSource getMapToQuery(Director director) {
         MapSqlParameterSource map = new MapSqlParameterSource();
@@ -39,6 +44,8 @@ public class DbDirectorsStorage implements DirectorsStorage {
         int createdDirectorId = keyHolder.getKey().intValue();
 
         director.setId(createdDirectorId);
+        searchIndex.putDirector(createdDirectorId, director.getName());
+        referenceData.invalidateDirectors();
         return director;
     }
 
@@ -49,6 +56,9 @@ public class DbDirectorsStorage implements DirectorsStorage {
         final String sqlQuery = "delete from DIRECTORS where DIRECTOR_ID = :id";
 
         jdbcOperations.update(sqlQuery, Map.of("id", director.getId()));
+        searchIndex.removeDirector(director.getId());
+        referenceData.invalidateDirectors();
+        filmCache.clear();
         return director;
     }
 
@@ -65,83 +75,63 @@ public class DbDirectorsStorage implements DirectorsStorage {
                 "where DIRECTOR_ID = :id";
 
         jdbcOperations.update(sqlQuery, getMapToQuery(director));
+        searchIndex.putDirector(director.getId(), director.getName());
+        referenceData.invalidateDirectors();
+        filmCache.clear();
         return director;
     }
 
     @Override
     public List<Director> getAll() {
-        final String sqlQuery = "select * " +
-                "from DIRECTORS";
-
-        return jdbcOperations.query(sqlQuery, StorageUtils::directorMapRow);
+        return referenceData.getDirectors();
     }
 
     @Override
     public Optional<Director> getDirectorById(int id) {
-        final String sqlQuery = "select * " +
-                "from DIRECTORS " +
-                "where DIRECTOR_ID = :id";
-        final List<Director> directors = jdbcOperations.query(sqlQuery, Map.of("id", id), StorageUtils::directorMapRow);
-        return directors.size() == 0 ? Optional.empty() : Optional.of(directors.get(0));
+        return Optional.ofNullable(referenceData.getDirector(id));
     }
 
+    /**
+     * Приводит режиссеров фильма в базе к режиссерам из запроса: пакетно удаляет лишние
+     * и вставляет недостающие связи, не трогая совпадающие.
+     */
     @Override
-    public void deleteDirectorsFrom(Film film) {
-        final String sqlQuery = "delete from FILMS_AND_DIRECTORS " +
-                "where FILM_ID = :filmId";
-
-        jdbcOperations.update(sqlQuery, Map.of("filmId", film.getId()));
-    }
-
-    @Override
-    public void saveDirectorsFor(Film film) {
-        Set<Director> directors = film.getDirectors();
-
-        if (directors != null || !directors.isEmpty()) {
-            final String sqlGenresQuery = "insert into FILMS_AND_DIRECTORS values (:filmId, :directorId)";
-            int i = 0;
-            SqlParameterSource[] batchParams = new SqlParameterSource[directors.size()];
-
-            for (Director director : directors) {
-                MapSqlParameterSource params = new MapSqlParameterSource()
-                        .addValue("directorId", director.getId())
-                        .addValue("filmId", film.getId());
-                batchParams[i++] = params;
-            }
-            jdbcOperations.batchUpdate(sqlGenresQuery, batchParams);
+    public void updateDirectorsFor(Film film) {
+        final String selectQuery = "select DIRECTOR_ID from FILMS_AND_DIRECTORS where FILM_ID = :filmId";
+        Set<Integer> storedIds = new HashSet<>(jdbcOperations.queryForList(selectQuery,
+                Map.of("filmId", film.getId()), Integer.class));
+        Set<Integer> directorIds = film.getDirectors().stream()
+                .map(Director::getId)
+                .collect(Collectors.toSet());
+
+        SqlParameterSource[] removed = storedIds.stream()
+                .filter(directorId -> !directorIds.contains(directorId))
+                .map(directorId -> getLinkParams(film, directorId))
+                .toArray(SqlParameterSource[]::new);
+        SqlParameterSource[] added = directorIds.stream()
+                .filter(directorId -> !storedIds.contains(directorId))
+                .map(directorId -> getLinkParams(film, directorId))
+                .toArray(SqlParameterSource[]::new);
+        if (removed.length > 0) {
+            jdbcOperations.batchUpdate("delete from FILMS_AND_DIRECTORS " +
+                    "where FILM_ID = :filmId and DIRECTOR_ID = :directorId", removed);
         }
+        if (added.length > 0) {
+            jdbcOperations.batchUpdate("insert into FILMS_AND_DIRECTORS (FILM_ID, DIRECTOR_ID) " +
+                    "values (:filmId, :directorId)", added);
+        }
+        boolean changed = removed.length > 0 || added.length > 0;
+        TransactionUtils.afterCommit(() -> {
+            if (changed) {
+                filmCache.invalidate(film.getId());
+            }
+            searchIndex.setFilmDirectors(film.getId(), directorIds);
+        });
     }
 
-    @Override
-    public List<Director> getFilmDirectors(Film film) {
-        final String sqlQuery = "select * " +
-                "from FILMS_AND_DIRECTORS " +
-                "left join DIRECTORS on FILMS_AND_DIRECTORS.DIRECTOR_ID = DIRECTORS.DIRECTOR_ID " +
-                "where FILM_ID = :filmId";
-        return jdbcOperations.query(sqlQuery, Map.of("filmId", film.getId()), StorageUtils::directorMapRow);
-    }
-
-    @Override
-    public Map<Integer, HashSet<Director>> getDirectorsForFilms(List<Film> films) {
-        Map<Integer, HashSet<Director>> filmsAndDirectors = films.stream()
-                .collect(Collectors.toMap(film -> film.getId(), film -> new HashSet<Director>()));
-        final String sqlQuery = "select * " +
-                "from FILMS_AND_DIRECTORS " +
-                "left join DIRECTORS D on D.DIRECTOR_ID = FILMS_AND_DIRECTORS.DIRECTOR_ID " +
-                "where FILM_ID IN (:filmsIds)";
-        SqlRowSet sqlRowSet = jdbcOperations.queryForRowSet(sqlQuery, Map.of("filmsIds", new ArrayList(filmsAndDirectors.keySet())));
-
-        while (sqlRowSet.next()) {
-            int filmId = sqlRowSet.getInt("FILM_ID");
-            int directorId = sqlRowSet.getInt("DIRECTOR_ID");
-            String directorName = sqlRowSet.getString("NAME");
-            Director director = new Director();
-
-            director.setName(directorName);
-            director.setId(directorId);
-            filmsAndDirectors.get(filmId).add(director);
-            System.out.println("1.6");
-        }
-        return filmsAndDirectors;
+    private static SqlParameterSource getLinkParams(Film film, int directorId) {
+        return new MapSqlParameterSource()
+                .addValue("filmId", film.getId())
+                .addValue("directorId", directorId);
     }
 }
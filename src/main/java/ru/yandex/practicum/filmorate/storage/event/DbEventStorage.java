@@ -3,17 +3,16 @@ package ru.yandex.practicum.filmorate.storage.event;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Primary;
 import org.springframework.jdbc.core.JdbcOperations;
-import org.springframework.jdbc.support.GeneratedKeyHolder;
-import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.exception.DatabaseException;
 import ru.yandex.practicum.filmorate.model.Event;
 
-import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.time.Instant;
 import java.util.List;
+import java.util.stream.Collectors;
 
 @Component("DbEventStorage")
 @Primary
@@ -28,16 +27,26 @@ public class DbEventStorage implements EventStorage {
         String sqlQuery = "INSERT INTO feeds (userId, entityId, timestamp, eventType, operation) " +
                 "VALUES (?, ?, ?, ?, ?)";
 
-        KeyHolder keyHolder = new GeneratedKeyHolder();
-        jdbcTemplate.update(connection -> {
-            PreparedStatement stmt = connection.prepareStatement(sqlQuery, new String[]{"ID"});
-            stmt.setInt(1, event.getUserId());
-            stmt.setInt(2, event.getEntityId());
-            stmt.setLong(3, event.getTimestamp());
-            stmt.setString(4, event.getEventType());
-            stmt.setString(5, event.getOperation());
-            return stmt;
-        }, keyHolder);
+        jdbcTemplate.update(sqlQuery, event.getUserId(), event.getEntityId(), event.getTimestamp(),
+                event.getEventType(), event.getOperation());
+    }
+
+    /**
+     * Пакетно сохраняет события с уже проставленным временем одной транзакцией, так что
+     * при ошибке пачка не записывается частично и ее можно безопасно повторить.
+     * События пользователей, удаленных к моменту записи, пропускаются.
+     */
+    @Override
+    @Transactional
+    public void addEvents(List<Event> events) {
+        String sqlQuery = "INSERT INTO feeds (userId, entityId, timestamp, eventType, operation) " +
+                "SELECT ID, CAST(? AS INTEGER), CAST(? AS BIGINT), CAST(? AS VARCHAR(15)), CAST(? AS VARCHAR(15)) " +
+                "FROM users WHERE ID=?";
+
+        jdbcTemplate.batchUpdate(sqlQuery, events.stream()
+                .map(event -> new Object[]{event.getEntityId(), event.getTimestamp(), event.getEventType(),
+                        event.getOperation(), event.getUserId()})
+                .collect(Collectors.toList()));
     }
 
     @Override
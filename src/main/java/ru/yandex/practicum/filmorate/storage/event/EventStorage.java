@@ -7,5 +7,7 @@ import java.util.List;
 public interface EventStorage {
     void addEvent(Event event);
 
+    void addEvents(List<Event> events);
+
     List<Event> getUserFeeds(int userId);
 }
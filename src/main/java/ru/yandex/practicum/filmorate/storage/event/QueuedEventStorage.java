@@ -0,0 +1,316 @@
+package ru.yandex.practicum.filmorate.storage.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.exception.DatabaseException;
+import ru.yandex.practicum.filmorate.model.Event;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+/**
+ * Очередь записи событий ленты поверх DbEventStorage.
+ * Запросы кладут события в ограниченную очередь, один поток-писатель забирает их пачками
+ * до batch-size и вставляет одним пакетным запросом. Порядок событий сохраняется, поэтому
+ * события каждого пользователя попадают в FEEDS в том порядке, в каком произошли.
+ * Режимы записи:
+ * SYNC - событие пишется сразу в потоке запроса, очередь не используется;
+ * ASYNC - запрос только ставит событие в очередь;
+ * GROUP_COMMIT - запрос ждет, пока запишется пачка с его событием.
+ * Если очередь заполнена, запрос ждет свободного места. Постановка в очередь и остановка
+ * разделяют одну блокировку: после остановки событие уже не может попасть в очередь, которую
+ * никто не разберет, и пишется сразу. При остановке писатель сам дописывает очередь до конца.
+ * Чтение ленты дожидается записи всех событий, поставленных раньше. Все ожидания ограничены
+ * по времени. Если поток-писатель падает с Error, оставшаяся очередь дописывается
+ * и дальше события пишутся сразу.
+ */
+@Slf4j
+@Component("QueuedEventStorage")
+public class QueuedEventStorage implements EventStorage {
+
+    public enum Mode {
+        SYNC,
+        ASYNC,
+        GROUP_COMMIT
+    }
+
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long RETRY_DELAY_MS = 50;
+    private static final long POLL_TIMEOUT_MS = 100;
+    private static final long AWAIT_TIMEOUT_SECONDS = 10;
+
+    private final EventStorage storage;
+    private final Mode mode;
+    private final int batchSize;
+    private final BlockingQueue<Entry> queue;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong processed = new AtomicLong();
+    private volatile boolean stopping;
+    private volatile boolean writerFailed;
+    private ExecutorService executor;
+
+    public QueuedEventStorage(@Qualifier("DbEventStorage") EventStorage storage,
+                              @Value("${filmorate.events.write.mode:ASYNC}") Mode mode,
+                              @Value("${filmorate.events.write.queue-capacity:10000}") int queueCapacity,
+                              @Value("${filmorate.events.write.batch-size:500}") int batchSize) {
+        this.storage = storage;
+        this.mode = mode;
+        this.batchSize = batchSize;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (mode == Mode.SYNC) {
+            return;
+        }
+        executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "event-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.execute(this::runWriter);
+        log.info("Включена запись событий через очередь: режим {}, пачка {}", mode, batchSize);
+    }
+
+    /**
+     * Закрывает очередь для новых событий и ждет, пока писатель допишет ее.
+     * Если писатель не успел, он продолжает работу сам: очередь в текущем потоке
+     * не разбирается, чтобы не нарушить порядок событий.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        lock.writeLock().lock();
+        try {
+            if (executor == null || stopping) {
+                return;
+            }
+            stopping = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        executor.shutdown();
+        if (!executor.awaitTermination(AWAIT_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            log.warn("Запись событий не завершилась за {} с, в очереди осталось {}", AWAIT_TIMEOUT_SECONDS,
+                    queue.size());
+        }
+    }
+
+    @Override
+    public void addEvent(Event event) {
+        event.setTimestamp(Instant.now().toEpochMilli());
+        CompletableFuture<Void> written = mode == Mode.GROUP_COMMIT ? new CompletableFuture<>() : null;
+        if (!enqueue(new Entry(event, written))) {
+            storage.addEvents(List.of(event));
+            return;
+        }
+        if (written != null) {
+            await(written);
+        }
+    }
+
+    /**
+     * Ставит в очередь события с уже проставленным временем.
+     */
+    @Override
+    public void addEvents(List<Event> events) {
+        for (int i = 0; i < events.size(); i++) {
+            if (!enqueue(new Entry(events.get(i), null))) {
+                storage.addEvents(events.subList(i, events.size()));
+                return;
+            }
+        }
+    }
+
+    @Override
+    public List<Event> getUserFeeds(int userId) {
+        awaitWritten();
+        return storage.getUserFeeds(userId);
+    }
+
+    /**
+     * Ждет, пока запишутся все события, поставленные в очередь до вызова.
+     * Для этого в очередь ставится пустая метка: писатель отметит ее после предыдущих событий.
+     */
+    private void awaitWritten() {
+        if (processed.get() == enqueued.get()) {
+            return;
+        }
+        CompletableFuture<Void> marker = new CompletableFuture<>();
+        if (!enqueue(new Entry(null, marker))) {
+            return;
+        }
+        try {
+            await(marker);
+        } catch (RuntimeException e) {
+            // ошибка записи чужих событий не мешает прочитать ленту
+            log.warn("Не удалось дождаться записи событий перед чтением ленты", e);
+        }
+    }
+
+    /**
+     * Ставит запись в очередь и возвращает false, если очередь уже закрыта.
+     * Пока в очереди нет места, периодически проверяет, жив ли писатель.
+     */
+    private boolean enqueue(Entry entry) {
+        lock.readLock().lock();
+        try {
+            if (executor == null || stopping) {
+                return false;
+            }
+            while (!queue.offer(entry, POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                if (writerFailed) {
+                    return false;
+                }
+            }
+            enqueued.incrementAndGet();
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DatabaseException("Прервано ожидание места в очереди событий");
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static void await(CompletableFuture<Void> future) {
+        try {
+            future.get(AWAIT_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new DatabaseException("Ошибка записи события: " + e.getCause());
+        } catch (TimeoutException e) {
+            throw new DatabaseException("Событие не записано за " + AWAIT_TIMEOUT_SECONDS + " с");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DatabaseException("Прервано ожидание записи события");
+        }
+    }
+
+    private void runWriter() {
+        List<Entry> batch = new ArrayList<>(batchSize);
+        try {
+            while (!stopping || !queue.isEmpty()) {
+                Entry first;
+                try {
+                    first = queue.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    continue;
+                }
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                write(batch);
+                batch.clear();
+            }
+        } catch (Error e) {
+            log.error("Поток записи событий остановлен, дальше события пишутся сразу", e);
+            closeAfterFailure();
+            throw e;
+        }
+    }
+
+    /**
+     * Закрывает очередь после падения писателя и дописывает то, что в ней осталось.
+     * Ожидающие места в очереди запросы видят writerFailed и отпускают блокировку.
+     */
+    private void closeAfterFailure() {
+        writerFailed = true;
+        lock.writeLock().lock();
+        try {
+            stopping = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        List<Entry> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        try {
+            write(rest);
+        } catch (Error e) {
+            log.error("Не удалось дописать {} событий из очереди", rest.size(), e);
+        }
+    }
+
+    /**
+     * Записывает пачку, при ошибке повторяет запись. Если все попытки неудачны, события пачки
+     * теряются, а ожидающие их запросы получают ошибку. Error не повторяется: ожидающие
+     * получают ошибку, а сам Error пробрасывается дальше.
+     */
+    private void write(List<Entry> batch) {
+        List<Event> events = batch.stream()
+                .map(Entry::getEvent)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+        Throwable error = null;
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS && !events.isEmpty(); attempt++) {
+            try {
+                storage.addEvents(events);
+                error = null;
+                break;
+            } catch (RuntimeException e) {
+                error = e;
+                log.warn("Ошибка записи {} событий, попытка {}", events.size(), attempt, e);
+                sleep(RETRY_DELAY_MS * attempt);
+            } catch (Error e) {
+                error = e;
+                break;
+            }
+        }
+        if (error != null) {
+            log.error("События не записаны: {}", events);
+        }
+        for (Entry entry : batch) {
+            if (entry.getWritten() != null) {
+                if (error == null) {
+                    entry.getWritten().complete(null);
+                } else {
+                    entry.getWritten().completeExceptionally(error);
+                }
+            }
+        }
+        processed.addAndGet(batch.size());
+        if (error instanceof Error) {
+            throw (Error) error;
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @AllArgsConstructor
+    @Getter
+    private static class Entry {
+        private final Event event;
+        private final CompletableFuture<Void> written;
+    }
+}
@@ -0,0 +1,233 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+/**
+ * Сжатое множество неотрицательных int в духе Roaring bitmap.
+ * Числа делятся на блоки по старшим 16 битам. Редкий блок хранит отсортированный массив
+ * младших половин (до ARRAY_LIMIT значений), плотный - битовую карту на 65536 бит.
+ * Не потокобезопасно, синхронизация - на стороне владельца.
+ */
+class CompressedBitmap {
+
+    private static final int ARRAY_LIMIT = 4096;
+
+    private final Map<Integer, Container> containers = new HashMap<>();
+
+    void add(int value) {
+        containers.compute(value >>> 16, (high, container) ->
+                (container == null ? new ArrayContainer() : container).add((char) value));
+    }
+
+    void remove(int value) {
+        int high = value >>> 16;
+        Container container = containers.get(high);
+        if (container == null) {
+            return;
+        }
+        container = container.remove((char) value);
+        if (container.cardinality() == 0) {
+            containers.remove(high);
+        } else {
+            containers.put(high, container);
+        }
+    }
+
+    void clear() {
+        containers.clear();
+    }
+
+    boolean contains(int value) {
+        Container container = containers.get(value >>> 16);
+        return container != null && container.contains((char) value);
+    }
+
+    int cardinality() {
+        return containers.values().stream()
+                .mapToInt(Container::cardinality)
+                .sum();
+    }
+
+    boolean isEmpty() {
+        return containers.isEmpty();
+    }
+
+    void forEach(IntConsumer consumer) {
+        containers.forEach((high, container) -> container.forEach(low -> consumer.accept(high << 16 | low)));
+    }
+
+    /**
+     * Возвращает все числа множества по возрастанию.
+     */
+    int[] toArray() {
+        int[] values = new int[cardinality()];
+        int[] size = new int[1];
+        forEach(value -> values[size[0]++] = value);
+        Arrays.sort(values);
+        return values;
+    }
+
+    /**
+     * Передает consumer все числа, которые есть и в этом множестве, и в other.
+     */
+    void forEachAnd(CompressedBitmap other, IntConsumer consumer) {
+        CompressedBitmap smaller = containers.size() <= other.containers.size() ? this : other;
+        CompressedBitmap larger = smaller == this ? other : this;
+        smaller.containers.forEach((high, container) -> {
+            Container pair = larger.containers.get(high);
+            if (pair != null) {
+                container.forEachAnd(pair, low -> consumer.accept(high << 16 | low));
+            }
+        });
+    }
+
+    private interface Container {
+        Container add(char value);
+
+        Container remove(char value);
+
+        boolean contains(char value);
+
+        int cardinality();
+
+        void forEach(IntConsumer consumer);
+
+        void forEachAnd(Container other, IntConsumer consumer);
+    }
+
+    private static class ArrayContainer implements Container {
+        private char[] values = new char[4];
+        private int size;
+
+        @Override
+        public Container add(char value) {
+            int index = Arrays.binarySearch(values, 0, size, value);
+            if (index >= 0) {
+                return this;
+            }
+            if (size == ARRAY_LIMIT) {
+                return toBitmap().add(value);
+            }
+            index = -index - 1;
+            if (size == values.length) {
+                values = Arrays.copyOf(values, Math.min(values.length * 2, ARRAY_LIMIT));
+            }
+            System.arraycopy(values, index, values, index + 1, size - index);
+            values[index] = value;
+            size++;
+            return this;
+        }
+
+        @Override
+        public Container remove(char value) {
+            int index = Arrays.binarySearch(values, 0, size, value);
+            if (index >= 0) {
+                System.arraycopy(values, index + 1, values, index, size - index - 1);
+                size--;
+            }
+            return this;
+        }
+
+        @Override
+        public boolean contains(char value) {
+            return Arrays.binarySearch(values, 0, size, value) >= 0;
+        }
+
+        @Override
+        public int cardinality() {
+            return size;
+        }
+
+        @Override
+        public void forEach(IntConsumer consumer) {
+            for (int i = 0; i < size; i++) {
+                consumer.accept(values[i]);
+            }
+        }
+
+        @Override
+        public void forEachAnd(Container other, IntConsumer consumer) {
+            for (int i = 0; i < size; i++) {
+                if (other.contains(values[i])) {
+                    consumer.accept(values[i]);
+                }
+            }
+        }
+
+        private BitmapContainer toBitmap() {
+            BitmapContainer bitmap = new BitmapContainer();
+            forEach(low -> bitmap.add((char) low));
+            return bitmap;
+        }
+    }
+
+    private static class BitmapContainer implements Container {
+        private final long[] words = new long[1 << 10];
+        private int cardinality;
+
+        @Override
+        public Container add(char value) {
+            long bit = 1L << value;
+            if ((words[value >>> 6] & bit) == 0) {
+                words[value >>> 6] |= bit;
+                cardinality++;
+            }
+            return this;
+        }
+
+        @Override
+        public Container remove(char value) {
+            long bit = 1L << value;
+            if ((words[value >>> 6] & bit) != 0) {
+                words[value >>> 6] &= ~bit;
+                cardinality--;
+            }
+            return cardinality <= ARRAY_LIMIT / 2 ? toArray() : this;
+        }
+
+        @Override
+        public boolean contains(char value) {
+            return (words[value >>> 6] & 1L << value) != 0;
+        }
+
+        @Override
+        public int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        public void forEach(IntConsumer consumer) {
+            for (int i = 0; i < words.length; i++) {
+                forEachBit(i, words[i], consumer);
+            }
+        }
+
+        @Override
+        public void forEachAnd(Container other, IntConsumer consumer) {
+            if (!(other instanceof BitmapContainer)) {
+                other.forEachAnd(this, consumer);
+                return;
+            }
+            long[] otherWords = ((BitmapContainer) other).words;
+            for (int i = 0; i < words.length; i++) {
+                forEachBit(i, words[i] & otherWords[i], consumer);
+            }
+        }
+
+        private static void forEachBit(int wordIndex, long word, IntConsumer consumer) {
+            while (word != 0) {
+                consumer.accept(wordIndex << 6 | Long.numberOfTrailingZeros(word));
+                word &= word - 1;
+            }
+        }
+
+        private ArrayContainer toArray() {
+            ArrayContainer array = new ArrayContainer();
+            forEach(low -> array.add((char) low));
+            return array;
+        }
+    }
+}
@@ -2,21 +2,30 @@ package ru.yandex.practicum.filmorate.storage.film;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Primary;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.jdbc.core.JdbcOperations;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcOperations;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
-import org.springframework.jdbc.support.rowset.SqlRowSet;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.exception.DatabaseException;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.*;
-import ru.yandex.practicum.filmorate.storage.StorageUtils;
+import ru.yandex.practicum.filmorate.storage.ReferenceDataCache;
+import ru.yandex.practicum.filmorate.storage.TransactionUtils;
 
+import javax.annotation.PostConstruct;
+import java.sql.Connection;
 import java.sql.Date;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
 import java.util.*;
+import java.util.function.Function;
+import java.util.function.ObjIntConsumer;
 import java.util.stream.Collectors;
 
 @Component("DbFilmStorage")
@@ -24,17 +33,164 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class DbFilmStorage implements FilmStorage {
 
+    private static final int EXPORT_FETCH_SIZE = 500;
+    /**
+     * Лайк ставится одним оператором MERGE: повторный лайк ничего не меняет,
+     * лайк удаленного фильма или пользователя пропускается.
+     */
+    private static final String MERGE_LIKE_QUERY = "MERGE INTO LIKES L " +
+            "USING (SELECT U.ID AS USER_ID, F.ID AS FILM_ID FROM USERS U, FILMS F WHERE U.ID=? AND F.ID=?) S " +
+            "ON L.USER_ID=S.USER_ID AND L.FILM_ID=S.FILM_ID " +
+            "WHEN NOT MATCHED THEN INSERT (USER_ID, FILM_ID, CREATED_AT) VALUES (S.USER_ID, S.FILM_ID, ?);";
+    private static final String DELETE_LIKE_QUERY = "DELETE FROM LIKES WHERE USER_ID=? AND FILM_ID=?;";
+    /**
+     * Удаляет лайк и в том же запросе возвращает время, когда он был поставлен.
+     */
+    private static final String DELETE_LIKE_RETURNING_QUERY = "SELECT CREATED_AT FROM OLD TABLE " +
+            "(DELETE FROM LIKES WHERE USER_ID=? AND FILM_ID=?);";
+
     private final JdbcOperations jdbcTemplate;
     private final NamedParameterJdbcOperations jdbcOperations;
+    private final FilmPopularityIndex popularityIndex;
+    private final FilmSearchIndex searchIndex;
+    private final ReferenceDataCache referenceData;
+    private final FilmCache filmCache;
+    private final UserLikesIndex likesIndex;
+    private final FilmTrendingIndex trendingIndex;
+    private final RecommendationStore recommendationStore;
+    private final IdPresenceIndex idIndex;
+
+    /**
+     * Загружает id существующих фильмов для проверок без запроса к базе.
+     */
+    @PostConstruct
+    public void rebuildIdIndex() {
+        idIndex.clearFilms();
+        jdbcTemplate.query("SELECT ID FROM FILMS;", (ResultSet rs) -> {
+            idIndex.addFilm(rs.getInt("ID"));
+        });
+    }
+
+    /**
+     * Заполняет индекс популярности по таблицам LIKES и FILM_GENRES.
+     */
+    @PostConstruct
+    public void rebuildPopularityIndex() {
+        Map<Integer, Set<Integer>> genreIds = new HashMap<>();
+        jdbcTemplate.query("SELECT FILM_ID, GENRE_ID FROM FILM_GENRES;", (ResultSet rs) -> {
+            genreIds.computeIfAbsent(rs.getInt("FILM_ID"), id -> new HashSet<>()).add(rs.getInt("GENRE_ID"));
+        });
+        String sqlQuery = "SELECT F.ID, F.RELEASE_DATE, COUNT(L.USER_ID) AS LIKES FROM FILMS F " +
+                "LEFT JOIN LIKES L ON L.FILM_ID = F.ID " +
+                "GROUP BY F.ID;";
+        List<FilmPopularityIndex.Entry> entries = jdbcTemplate.query(sqlQuery, (rs, rowNum) ->
+                new FilmPopularityIndex.Entry(rs.getInt("ID"),
+                        rs.getInt("LIKES"),
+                        rs.getDate("RELEASE_DATE").toLocalDate().getYear(),
+                        genreIds.getOrDefault(rs.getInt("ID"), Collections.emptySet())));
+        popularityIndex.rebuild(entries);
+    }
+
+    /**
+     * Заполняет индекс лайков пользователей по таблице LIKES.
+     */
+    @PostConstruct
+    public void rebuildLikesIndex() {
+        likesIndex.clear();
+        jdbcTemplate.query("SELECT USER_ID, FILM_ID FROM LIKES;", (ResultSet rs) -> {
+            likesIndex.add(rs.getInt("USER_ID"), rs.getInt("FILM_ID"));
+        });
+    }
+
+    /**
+     * Заполняет индекс трендов: год и жанры фильмов из FILMS и FILM_GENRES, время лайков из LIKES.
+     */
+    @PostConstruct
+    public void rebuildTrendingIndex() {
+        trendingIndex.clear();
+        Map<Integer, Set<Integer>> genreIds = new HashMap<>();
+        jdbcTemplate.query("SELECT FILM_ID, GENRE_ID FROM FILM_GENRES;", (ResultSet rs) -> {
+            genreIds.computeIfAbsent(rs.getInt("FILM_ID"), id -> new HashSet<>()).add(rs.getInt("GENRE_ID"));
+        });
+        jdbcTemplate.query("SELECT ID, RELEASE_DATE FROM FILMS;", (ResultSet rs) -> {
+            trendingIndex.putFilm(rs.getInt("ID"), rs.getDate("RELEASE_DATE").toLocalDate().getYear(),
+                    genreIds.getOrDefault(rs.getInt("ID"), Collections.emptySet()));
+        });
+        jdbcTemplate.query("SELECT FILM_ID, CREATED_AT FROM LIKES;", (ResultSet rs) -> {
+            trendingIndex.addLike(rs.getInt("FILM_ID"), rs.getTimestamp("CREATED_AT").getTime());
+        });
+    }
+
+    /**
+     * Заполняет поисковый индекс по названиям фильмов и именам режиссеров.
+     */
+    @PostConstruct
+    public void rebuildSearchIndex() {
+        searchIndex.clear();
+        jdbcTemplate.query("SELECT ID, NAME FROM FILMS;", (ResultSet rs) -> {
+            searchIndex.putFilm(rs.getInt("ID"), rs.getString("NAME"));
+        });
+        jdbcTemplate.query("SELECT DIRECTOR_ID, NAME FROM DIRECTORS;", (ResultSet rs) -> {
+            searchIndex.putDirector(rs.getInt("DIRECTOR_ID"), rs.getString("NAME"));
+        });
+        Map<Integer, Set<Integer>> filmDirectors = new HashMap<>();
+        jdbcTemplate.query("SELECT FILM_ID, DIRECTOR_ID FROM FILMS_AND_DIRECTORS;", (ResultSet rs) -> {
+            filmDirectors.computeIfAbsent(rs.getInt("FILM_ID"), id -> new HashSet<>()).add(rs.getInt("DIRECTOR_ID"));
+        });
+        filmDirectors.forEach(searchIndex::setFilmDirectors);
+    }
 
     @Override
-    public List<Film> getAll() {
+    public List<Film> getAll(Set<FilmField> fields) {
         String query = "SELECT * FROM FILMS;";
 
-        return jdbcTemplate.query(query, (rs, rowNum) -> makeFilm(rs));
+        return loadRelations(jdbcTemplate.query(query, (rs, rowNum) -> makeFilm(rs)), fields);
+    }
+
+    @Override
+    public List<Film> getPage(int afterId, int limit, Set<FilmField> fields) {
+        String query = "SELECT * FROM FILMS WHERE ID > ? ORDER BY ID LIMIT ?;";
+
+        return loadRelations(jdbcTemplate.query(query, (rs, rowNum) -> makeFilm(rs), afterId, limit), fields);
     }
 
+    /**
+     * Проходит по всем фильмам однонаправленным курсором и отдает их пачками по EXPORT_FETCH_SIZE,
+     * догружая связи только для текущей пачки, так что весь каталог в памяти не собирается.
+     * Число лайков берется из колонки LIKES_COUNT той же строки, таблица LIKES не читается.
+     */
     @Override
+    public void exportAll(ObjIntConsumer<Film> consumer) {
+        String query = "SELECT * FROM FILMS ORDER BY ID;";
+        List<Film> chunk = new ArrayList<>(EXPORT_FETCH_SIZE);
+        List<Integer> likeCounts = new ArrayList<>(EXPORT_FETCH_SIZE);
+
+        jdbcTemplate.query(connection -> {
+            PreparedStatement stmt = connection.prepareStatement(query,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            stmt.setFetchSize(EXPORT_FETCH_SIZE);
+            return stmt;
+        }, (ResultSet rs) -> {
+            chunk.add(makeFilm(rs));
+            likeCounts.add(rs.getInt("LIKES_COUNT"));
+            if (chunk.size() == EXPORT_FETCH_SIZE) {
+                exportChunk(chunk, likeCounts, consumer);
+            }
+        });
+        exportChunk(chunk, likeCounts, consumer);
+    }
+
+    private void exportChunk(List<Film> chunk, List<Integer> likeCounts, ObjIntConsumer<Film> consumer) {
+        loadRelations(chunk, FilmField.ALL);
+        for (int i = 0; i < chunk.size(); i++) {
+            consumer.accept(chunk.get(i), likeCounts.get(i));
+        }
+        chunk.clear();
+        likeCounts.clear();
+    }
+
+    @Override
+    @Transactional
     public Film create(Film film) {
         String filmQuery = "INSERT INTO FILMS (MPA_ID, NAME, DESCRIPTION, RELEASE_DATE, DURATION) values (?, ?, ?, ?, ? );";
         KeyHolder keyHolder = new GeneratedKeyHolder();
@@ -49,37 +205,150 @@ public class DbFilmStorage implements FilmStorage {
             return stmt;
         }, keyHolder);
         film.setId(Objects.requireNonNull(keyHolder.getKey()).intValue());
-        saveGenresFrom(film);
+        saveGenres(film, Collections.emptySet());
         setGenresTo(film);
         setMpaTo(film);
+        TransactionUtils.afterCommit(() -> {
+            idIndex.addFilm(film.getId());
+            filmCache.invalidate(film.getId());
+            popularityIndex.put(film);
+            trendingIndex.putFilm(film);
+            searchIndex.putFilm(film.getId(), film.getName());
+        });
         return film;
     }
 
+    /**
+     * Создает фильмы одним пакетом: фильмы, связи с жанрами и связи с режиссерами
+     * вставляются тремя пакетными запросами в одной транзакции.
+     * Возвращает id созданных фильмов в порядке входного списка.
+     */
+    @Override
+    @Transactional
+    public List<Integer> createAll(List<Film> films) {
+        if (films.isEmpty()) {
+            return new ArrayList<>();
+        }
+        String filmQuery = "INSERT INTO FILMS (MPA_ID, NAME, DESCRIPTION, RELEASE_DATE, DURATION) values (?, ?, ?, ?, ? );";
+        List<Integer> ids = jdbcTemplate.execute((Connection connection) -> {
+            try (PreparedStatement stmt = connection.prepareStatement(filmQuery, new String[]{"ID"})) {
+                for (Film film : films) {
+                    stmt.setInt(1, film.getMpa().getId());
+                    stmt.setString(2, film.getName());
+                    stmt.setString(3, film.getDescription());
+                    stmt.setDate(4, Date.valueOf(film.getReleaseDate()));
+                    stmt.setInt(5, film.getDuration());
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+                List<Integer> keys = new ArrayList<>(films.size());
+                try (ResultSet rs = stmt.getGeneratedKeys()) {
+                    while (rs.next()) {
+                        keys.add(rs.getInt(1));
+                    }
+                }
+                return keys;
+            }
+        });
+        if (ids == null || ids.size() != films.size()) {
+            throw new DatabaseException("Не удалось получить id созданных фильмов");
+        }
+        checkKeysOrder(films, ids);
+
+        List<Object[]> genreLinks = new ArrayList<>();
+        List<Object[]> directorLinks = new ArrayList<>();
+        for (int i = 0; i < films.size(); i++) {
+            Film film = films.get(i);
+            film.setId(ids.get(i));
+            film.getGenres().forEach(genre -> genreLinks.add(new Object[]{film.getId(), genre.getId()}));
+            film.getDirectors().forEach(director -> directorLinks.add(new Object[]{film.getId(), director.getId()}));
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO FILM_GENRES (FILM_ID, GENRE_ID) VALUES (?, ?);", genreLinks);
+        jdbcTemplate.batchUpdate("INSERT INTO FILMS_AND_DIRECTORS (FILM_ID, DIRECTOR_ID) VALUES (?, ?);",
+                directorLinks);
+
+        for (Film film : films) {
+            setGenresTo(film);
+            setMpaTo(film);
+        }
+        TransactionUtils.afterCommit(() -> {
+            for (Film film : films) {
+                idIndex.addFilm(film.getId());
+                popularityIndex.put(film);
+                trendingIndex.putFilm(film);
+                searchIndex.putFilm(film.getId(), film.getName());
+                searchIndex.setFilmDirectors(film.getId(), film.getDirectors().stream()
+                        .map(Director::getId)
+                        .collect(Collectors.toSet()));
+            }
+        });
+        return ids;
+    }
+
+    /**
+     * JDBC не обещает, что ключи пакетной вставки вернутся в порядке строк пакета.
+     * Поэтому созданные строки перечитываются и сверяются с фильмами по позициям.
+     * Строки с одинаковыми колонками неразличимы, и любой порядок их id верен.
+     * При расхождении бросается исключение и транзакция откатывается.
+     */
+    private void checkKeysOrder(List<Film> films, List<Integer> ids) {
+        String query = "SELECT * FROM FILMS WHERE ID IN (:ids);";
+        Map<Integer, Film> created = jdbcOperations.query(query, Map.of("ids", ids), (rs, rowNum) -> makeFilm(rs))
+                .stream()
+                .collect(Collectors.toMap(Film::getId, Function.identity()));
+        for (int i = 0; i < films.size(); i++) {
+            Film film = films.get(i);
+            Film row = created.get(ids.get(i));
+            if (row == null
+                    || !Objects.equals(row.getName(), film.getName())
+                    || !Objects.equals(row.getDescription(), film.getDescription())
+                    || !Objects.equals(row.getReleaseDate(), film.getReleaseDate())
+                    || row.getDuration() != film.getDuration()
+                    || row.getMpa().getId() != film.getMpa().getId()) {
+                throw new DatabaseException("Id созданных фильмов вернулись не в порядке вставки");
+            }
+        }
+    }
+
     private void setMpaTo(Film film) {
         Mpa mpa = getMpaById(film.getMpa().getId());
         film.setMpa(mpa);
     }
 
     private void setGenresTo(Film film) {
-        Map<Integer, String> genres = getGenresById(film.getId()).stream()
-                .collect(Collectors.toMap(Genre::getId, Genre::getName));
-        for (Genre genre : film.getGenres()) {
-            Integer genreId = genre.getId();
-            genre.setName(genres.get(genreId));
-        }
+        List<Genre> genres = film.getGenres().stream()
+                .map(genre -> referenceData.getGenre(genre.getId()))
+                .collect(Collectors.toList());
+        film.getGenres().clear();
+        film.getGenres().addAll(genres);
     }
 
-    private void saveGenresFrom(Film film) {
-        if (film.getGenres() != null && !film.getGenres().isEmpty()) {
-            String sqlQuery = "INSERT INTO FILM_GENRES (FILM_ID, GENRE_ID) values (?, ?);";
-
-            for (Genre genre : film.getGenres()) {
-                jdbcTemplate.update(sqlQuery, film.getId(), genre.getId());
-            }
+    /**
+     * Приводит жанры фильма в базе к жанрам из запроса: пакетно удаляет лишние
+     * и вставляет недостающие связи, не трогая совпадающие.
+     */
+    private void saveGenres(Film film, Set<Integer> storedGenreIds) {
+        Set<Integer> genreIds = film.getGenres().stream()
+                .map(Genre::getId)
+                .collect(Collectors.toSet());
+        List<Object[]> removed = storedGenreIds.stream()
+                .filter(genreId -> !genreIds.contains(genreId))
+                .map(genreId -> new Object[]{film.getId(), genreId})
+                .collect(Collectors.toList());
+        List<Object[]> added = genreIds.stream()
+                .filter(genreId -> !storedGenreIds.contains(genreId))
+                .map(genreId -> new Object[]{film.getId(), genreId})
+                .collect(Collectors.toList());
+        if (!removed.isEmpty()) {
+            jdbcTemplate.batchUpdate("DELETE FROM FILM_GENRES WHERE FILM_ID=? AND GENRE_ID=?;", removed);
+        }
+        if (!added.isEmpty()) {
+            jdbcTemplate.batchUpdate("INSERT INTO FILM_GENRES (FILM_ID, GENRE_ID) VALUES (?, ?);", added);
         }
     }
 
     @Override
+    @Transactional
     public Film update(Film film) {
         String sqlQuery = "UPDATE FILMS SET NAME=?, DESCRIPTION=?, DURATION=?, RELEASE_DATE=?, MPA_ID=? WHERE ID=?;";
         jdbcTemplate.update(sqlQuery,
@@ -89,254 +358,360 @@ public class DbFilmStorage implements FilmStorage {
                 film.getReleaseDate(),
                 film.getMpa().getId(),
                 film.getId());
-        updateGenres(film);
-        return getById(film.getId());
+        String genresQuery = "SELECT GENRE_ID FROM FILM_GENRES WHERE FILM_ID=?;";
+        saveGenres(film, new HashSet<>(jdbcTemplate.queryForList(genresQuery, Integer.class, film.getId())));
+        setGenresTo(film);
+        setMpaTo(film);
+        TransactionUtils.afterCommit(() -> {
+            filmCache.invalidate(film.getId());
+            popularityIndex.put(film);
+            trendingIndex.putFilm(film);
+            searchIndex.putFilm(film.getId(), film.getName());
+        });
+        return film;
     }
 
+    /**
+     * Внутри транзакции фильм читается из базы мимо кэша: транзакция видит свои
+     * незафиксированные изменения, но они не должны попасть в общий кэш.
+     */
     @Override
     public Film getById(int id) {
-        String sqlQuery = "SELECT * FROM FILMS WHERE ID=?;";
-        SqlRowSet filmRows = jdbcTemplate.queryForRowSet(sqlQuery, id);
-        if (filmRows.next()) {
-            Film film = Film.builder()
-                    .id(filmRows.getInt("ID"))
-                    .name(filmRows.getString("NAME"))
-                    .description(filmRows.getString("DESCRIPTION"))
-                    .duration(filmRows.getInt("DURATION"))
-                    .releaseDate(Objects.requireNonNull(filmRows.getDate("RELEASE_DATE")).toLocalDate())
-                    .mpa(getMpaById(filmRows.getInt("MPA_ID")))
-                    .build();
-            film.setGenres(getGenresById(id));
-            film.setLikes(getLikesById(id));
-            film.setMpa(getMpaById(film.getMpa().getId()));
-            return film;
+        Film film;
+        if (TransactionUtils.inTransaction()) {
+            film = loadById(id);
+        } else {
+            film = idIndex.hasFilm(id) ? filmCache.get(id, this::loadById) : null;
         }
-        return null;
+        if (film == null) {
+            throw new NotFoundException("Фильм с ID: '" + id + "' не найден");
+        }
+        return film;
+    }
+
+    private Film loadById(int id) {
+        String sqlQuery = "SELECT * FROM FILMS WHERE ID=?;";
+        List<Film> films = loadWithLikes(jdbcTemplate.query(sqlQuery, (rs, rowNum) -> makeFilm(rs), id));
+        return films.isEmpty() ? null : films.get(0);
     }
 
     @Override
-    public List<Film> getPopular(int count, Integer genreId, Integer year) {
-        String sqlQuery =
-                "SELECT F.ID,F.NAME,F.DESCRIPTION,F.DURATION,F.RELEASE_DATE,F.MPA_ID " +
-                        "FROM FILMS F " +
-                        "LEFT JOIN LIKES L ON F.ID = L.FILM_ID " +
-                        "GROUP BY F.ID " +
-                        "ORDER BY COUNT(L.USER_ID) DESC " +
-                        "LIMIT ?;";
-        if (Objects.nonNull(genreId) && Objects.nonNull(year)) {
-            sqlQuery =
-                    "SELECT F.ID,F.NAME,F.DESCRIPTION,F.DURATION,F.RELEASE_DATE,F.MPA_ID " +
-                            "FROM FILMS F " +
-                            "LEFT JOIN LIKES L ON F.ID = L.FILM_ID " +
-                            "WHERE EXTRACT(YEAR FROM F.RELEASE_DATE) = ? AND F.ID IN " +
-                            "(SELECT FILM_ID FROM FILM_GENRES FG WHERE FG.GENRE_ID = ?) " +
-                            "GROUP BY F.ID " +
-                            "ORDER BY COUNT(L.USER_ID) DESC " +
-                            "LIMIT ?;";
-            return jdbcTemplate.query(sqlQuery, (rs, rowNum) -> makeFilm(rs), year, genreId, count);
-        }
-        if (Objects.nonNull(genreId) || Objects.nonNull(year)) {
-            if (Objects.nonNull(genreId)) {
-                sqlQuery =
-                        "SELECT F.ID,F.NAME,F.DESCRIPTION,F.DURATION,F.RELEASE_DATE,F.MPA_ID " +
-                                "FROM FILMS F " +
-                                "LEFT JOIN LIKES L ON F.ID = L.FILM_ID " +
-                                "WHERE F.ID IN " +
-                                "(SELECT FILM_ID FROM FILM_GENRES FG WHERE FG.GENRE_ID = ?) " +
-                                "GROUP BY F.ID " +
-                                "ORDER BY COUNT(L.USER_ID) DESC " +
-                                "LIMIT ?;";
-                return jdbcTemplate.query(sqlQuery, (rs, rowNum) -> makeFilm(rs), genreId, count);
-            }
-            sqlQuery =
-                    "SELECT F.ID,F.NAME,F.DESCRIPTION,F.DURATION,F.RELEASE_DATE,F.MPA_ID " +
-                            "FROM FILMS F " +
-                            "LEFT JOIN LIKES L ON F.ID = L.FILM_ID " +
-                            "WHERE EXTRACT(YEAR FROM F.RELEASE_DATE) = ? " +
-                            "GROUP BY F.ID " +
-                            "ORDER BY COUNT(L.USER_ID) DESC " +
-                            "LIMIT ?;";
-            return jdbcTemplate.query(sqlQuery, (rs, rowNum) -> makeFilm(rs), year, count);
+    public List<Film> getPopular(int count, Integer genreId, Integer year, Set<FilmField> fields) {
+        return getByIds(popularityIndex.getPopular(count, genreId, year), fields);
+    }
+
+    @Override
+    public List<Film> getTrending(Duration window, int count, Integer genreId, Integer year) {
+        return getByIds(trendingIndex.getTrending(window, count, genreId, year), FilmField.ALL);
+    }
+
+    /**
+     * Загружает фильмы в порядке переданных id, пропуская несуществующие.
+     */
+    public List<Film> getByIds(List<Integer> ids, Set<FilmField> fields) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
         }
-        return jdbcTemplate.query(sqlQuery, (rs, rowNum) -> makeFilm(rs), count);
+        String sqlQuery = "SELECT * FROM FILMS WHERE ID IN (:ids);";
+        Map<Integer, Film> films = loadRelations(jdbcOperations.query(sqlQuery, Map.of("ids", ids),
+                (rs, rowNum) -> makeFilm(rs)), fields).stream()
+                .collect(Collectors.toMap(Film::getId, Function.identity()));
+        return ids.stream()
+                .map(films::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
     }
 
     @Override
-    public Film addLike(int id, int userId) {
-        boolean isLikeExists = false;
-        String sqlQuery = "SELECT * FROM LIKES WHERE FILM_ID=? AND USER_ID=?;";
-        SqlRowSet rows = jdbcTemplate.queryForRowSet(sqlQuery, id, userId);
-        if (rows.next()) {
-            isLikeExists = true;
+    @Transactional
+    public LikeStatus addLike(int id, int userId) {
+        if (likesIndex.hasLiked(userId, id)) {
+            return new LikeStatus(id, popularityIndex.getLikes(id), true);
         }
-        if (!isLikeExists) {
-            sqlQuery = "INSERT INTO LIKES (USER_ID, FILM_ID) VALUES (?,?);";
-            jdbcTemplate.update(sqlQuery, userId, id);
+        long now = System.currentTimeMillis();
+        int inserted;
+        try {
+            inserted = jdbcTemplate.update(MERGE_LIKE_QUERY, userId, id, new Timestamp(now));
+        } catch (DuplicateKeyException e) {
+            // такой же лайк только что вставлен параллельным запросом
+            inserted = 0;
         }
-        return getById(id);
+        if (inserted == 0) {
+            return new LikeStatus(id, popularityIndex.getLikes(id), true);
+        }
+        updateLikesCount(id, 1);
+        TransactionUtils.afterCommit(() -> {
+            likesIndex.add(userId, id);
+            recommendationStore.markDirty(userId);
+            trendingIndex.addLike(id, now);
+            filmCache.invalidate(id);
+            popularityIndex.changeLikes(id, 1);
+        });
+        // индекс популярности обновится после фиксации, в ответе лайк уже учтен
+        return new LikeStatus(id, popularityIndex.getLikes(id) + 1, true);
     }
 
     @Override
-    public Film removeLike(int id, int userId) {
-        String sqlQuery = "DELETE FROM LIKES WHERE FILM_ID=? AND USER_ID=?;";
-        jdbcTemplate.update(sqlQuery, id, userId);
-        return getById(id);
+    @Transactional
+    public LikeStatus removeLike(int id, int userId) {
+        if (likesIndex.hasLiked(userId, id)) {
+            List<Timestamp> likedAt = jdbcTemplate.queryForList(DELETE_LIKE_RETURNING_QUERY, Timestamp.class,
+                    userId, id);
+            if (!likedAt.isEmpty()) {
+                updateLikesCount(id, -1);
+                TransactionUtils.afterCommit(() -> {
+                    likesIndex.remove(userId, id);
+                    recommendationStore.markDirty(userId);
+                    trendingIndex.removeLike(id, likedAt.get(0).getTime());
+                    filmCache.invalidate(id);
+                    popularityIndex.changeLikes(id, -1);
+                });
+                return new LikeStatus(id, popularityIndex.getLikes(id) - 1, false);
+            }
+        }
+        return new LikeStatus(id, popularityIndex.getLikes(id), false);
     }
 
+    /**
+     * Число лайков по индексу популярности, без чтения лайков фильма из базы.
+     */
     @Override
-    public boolean isExists(int id) {
-        String sqlQuery = "SELECT ID FROM FILMS WHERE ID=?;";
-        SqlRowSet filmRows = jdbcTemplate.queryForRowSet(sqlQuery, id);
-        if (filmRows.next()) {
-            int idFromFilms = filmRows.getInt("ID");
-            return idFromFilms == id;
-        }
-        return false;
+    public int getLikeCount(int id) {
+        return popularityIndex.getLikes(id);
     }
 
     @Override
-    public List<Film> getFilmsByDirector(Director director) {
-        String query = "select * " +
-                "from FILMS " +
-                "right join FILMS_AND_DIRECTORS FAD on FILMS.ID = FAD.FILM_ID " +
-                "where FAD.DIRECTOR_ID = :directorId";
+    public boolean hasLike(int id, int userId) {
+        return likesIndex.hasLiked(userId, id);
+    }
 
-        return jdbcOperations.query(query, Map.of("directorId", director.getId()), (rs, rowNum) -> makeFilm(rs));
+    /**
+     * Пакетно ставит лайки. Уже существующие лайки, а также лайки удаленных к этому моменту
+     * фильмов и пользователей пропускаются; счетчики и индексы меняются только для реально добавленных.
+     */
+    @Override
+    @Transactional
+    public void addLikes(Collection<Like> likes) {
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        List<Like> added = batchUpdateLikes(MERGE_LIKE_QUERY, likes,
+                like -> new Object[]{like.getUserId(), like.getFilmId(), now});
+        changeLikesCounts(added, 1);
+        TransactionUtils.afterCommit(() -> {
+            for (Like like : added) {
+                likesIndex.add(like.getUserId(), like.getFilmId());
+                recommendationStore.markDirty(like.getUserId());
+                trendingIndex.addLike(like.getFilmId(), now.getTime());
+            }
+        });
     }
 
+    /**
+     * Пакетно снимает лайки. Время удаляемых лайков для индекса трендов читается заранее одним запросом.
+     */
     @Override
-    public List<Film> searchFilms(boolean searchByTitle, boolean searchByDirector, String query) {
-        StringBuilder stringBuilder = new StringBuilder();
-        stringBuilder.append("SELECT films.ID, films.NAME, films.DESCRIPTION, films.DURATION, films.RELEASE_DATE, ");
-        stringBuilder.append("films.MPA_ID, COUNT(likes.user_id) FROM films ");
-        stringBuilder.append("LEFT JOIN likes ON films.id=likes.film_id ");
-        if (searchByTitle && searchByDirector) {
-            stringBuilder.append("LEFT JOIN films_and_directors ON films.id=films_and_directors.film_id ");
-            stringBuilder.append("LEFT JOIN directors ON films_and_directors.director_id=directors.director_id ");
-            stringBuilder.append("WHERE UPPER(films.name) LIKE UPPER('%" + query + "%') ");
-            stringBuilder.append("OR UPPER(directors.name) LIKE UPPER('%" + query + "%') ");
-        } else if (searchByTitle) {
-            stringBuilder.append("WHERE UPPER(films.name) LIKE UPPER('%" + query + "%') ");
-        } else if (searchByDirector) {
-            stringBuilder.append("LEFT JOIN films_and_directors ON films.id=films_and_directors.film_id ");
-            stringBuilder.append("LEFT JOIN directors ON films_and_directors.director_id=directors.director_id ");
-            stringBuilder.append("WHERE UPPER(directors.name) LIKE UPPER('%" + query + "%') ");
+    @Transactional
+    public void removeLikes(Collection<Like> likes) {
+        if (likes.isEmpty()) {
+            return;
         }
-        stringBuilder.append("GROUP BY films.id ");
-        stringBuilder.append("ORDER BY COUNT(likes.user_id) DESC, films.id DESC");
+        Map<Like, Long> likedAt = new HashMap<>();
+        String timesQuery = "SELECT USER_ID, FILM_ID, CREATED_AT FROM LIKES " +
+                "WHERE USER_ID IN (:userIds) AND FILM_ID IN (:filmIds);";
+        Map<String, Object> params = Map.of(
+                "userIds", likes.stream().map(Like::getUserId).collect(Collectors.toSet()),
+                "filmIds", likes.stream().map(Like::getFilmId).collect(Collectors.toSet()));
+        jdbcOperations.query(timesQuery, params, (ResultSet rs) -> {
+            likedAt.put(new Like(rs.getInt("FILM_ID"), rs.getInt("USER_ID")), rs.getTimestamp("CREATED_AT").getTime());
+        });
+        List<Like> removed = batchUpdateLikes(DELETE_LIKE_QUERY, likes,
+                like -> new Object[]{like.getUserId(), like.getFilmId()});
+        changeLikesCounts(removed, -1);
+        TransactionUtils.afterCommit(() -> {
+            for (Like like : removed) {
+                likesIndex.remove(like.getUserId(), like.getFilmId());
+                recommendationStore.markDirty(like.getUserId());
+                Long time = likedAt.get(like);
+                if (time != null) {
+                    trendingIndex.removeLike(like.getFilmId(), time);
+                }
+            }
+        });
+    }
 
-        return jdbcTemplate.query(stringBuilder.toString(), (rs, rowNum) -> makeFilm(rs));
+    /**
+     * Выполняет запрос пакетом для каждого лайка и возвращает лайки, на которых изменилась строка.
+     */
+    private List<Like> batchUpdateLikes(String sqlQuery, Collection<Like> likes, Function<Like, Object[]> args) {
+        List<Like> likeList = new ArrayList<>(likes);
+        List<Like> changed = new ArrayList<>();
+        if (likeList.isEmpty()) {
+            return changed;
+        }
+        int[] counts = jdbcTemplate.batchUpdate(sqlQuery, likeList.stream()
+                .map(args)
+                .collect(Collectors.toList()));
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                changed.add(likeList.get(i));
+            }
+        }
+        return changed;
     }
 
-    private Mpa getMpaById(int id) {
-        return StorageUtils.makeMpa(jdbcTemplate, id);
+    private void changeLikesCounts(List<Like> changed, int delta) {
+        Map<Integer, Integer> deltas = new HashMap<>();
+        changed.forEach(like -> deltas.merge(like.getFilmId(), delta, Integer::sum));
+        jdbcTemplate.batchUpdate("UPDATE FILMS SET LIKES_COUNT = LIKES_COUNT + ? WHERE ID=?;",
+                deltas.entrySet().stream()
+                        .map(entry -> new Object[]{entry.getValue(), entry.getKey()})
+                        .collect(Collectors.toList()));
+        TransactionUtils.afterCommit(() -> {
+            filmCache.invalidateAll(deltas.keySet());
+            deltas.forEach(popularityIndex::changeLikes);
+        });
     }
 
-    private Set<Genre> getGenresById(int id) {
-        String sqlQuery = "SELECT fg.GENRE_ID, g.NAME FROM FILM_GENRES AS fg " +
-                "LEFT JOIN GENRES AS g ON g.GENRE_ID = fg.GENRE_ID WHERE FILM_ID=?;";
-        List<Genre> genres = (jdbcTemplate.query(sqlQuery, (rs, rowNum) -> makeGenre(rs), id));
-        if (genres.isEmpty()) {
-            return new HashSet<>();
-        } else {
-            return new HashSet<>(genres);
-        }
+    private void updateLikesCount(int id, int delta) {
+        String sqlQuery = "UPDATE FILMS SET LIKES_COUNT = LIKES_COUNT + ? WHERE ID=?;";
+        jdbcTemplate.update(sqlQuery, delta, id);
     }
 
-    private void updateGenres(Film film) {
-        String sqlQuery = "DELETE FROM FILM_GENRES WHERE FILM_ID = ?;";
-        jdbcTemplate.update(sqlQuery, film.getId());
-        if (film.getGenres() != null && !film.getGenres().isEmpty()) {
-            Set<Genre> genres = new HashSet<>(film.getGenres());
-            sqlQuery = "INSERT INTO FILM_GENRES (FILM_ID, GENRE_ID) VALUES (?, ? );";
-            for (Genre genre : genres) {
-                jdbcTemplate.update(sqlQuery, film.getId(), genre.getId());
-            }
-        }
+    @Override
+    public boolean isExists(int id) {
+        return idIndex.hasFilm(id);
     }
 
-    private Set<Integer> getLikesById(int id) {
-        String sqlQuery = "SELECT U.ID, U.NAME, U.LOGIN, U.EMAIL, U.BIRTHDAY " +
-                "FROM USERS U " +
-                "LEFT JOIN LIKES L ON U.ID = L.USER_ID " +
-                "WHERE L.FILM_ID = ?;";
-        List<User> users = jdbcTemplate.query(sqlQuery, (rs, rowNum) -> makeUser(rs), id);
-        if (users.isEmpty()) {
-            return new HashSet<>();
-        } else {
-            Set<Integer> likes = new HashSet<>();
-            for (User user : users) {
-                likes.add(user.getId());
-            }
-            return likes;
-        }
+    /**
+     * Сортировка (по числу лайков или по дате выхода, в обоих случаях по возрастанию)
+     * и страница выполняются в базе по индексу FILMS_AND_DIRECTORS_DIRECTOR_IDX,
+     * связи догружаются только для вернувшихся фильмов.
+     */
+    @Override
+    public List<Film> getFilmsByDirector(Director director, String sortBy, int limit, int offset,
+                                         Set<FilmField> fields) {
+        String order = "year".equals(sortBy) ? "F.RELEASE_DATE, F.ID" : "F.LIKES_COUNT, F.ID";
+        String query = "SELECT F.* FROM FILMS_AND_DIRECTORS FAD " +
+                "JOIN FILMS F ON F.ID = FAD.FILM_ID " +
+                "WHERE FAD.DIRECTOR_ID = :directorId " +
+                "ORDER BY " + order + " LIMIT :limit OFFSET :offset;";
+        Map<String, Object> params = Map.of("directorId", director.getId(), "limit", limit, "offset", offset);
+
+        return loadRelations(jdbcOperations.query(query, params, (rs, rowNum) -> makeFilm(rs)), fields);
     }
 
-    private Genre makeGenre(ResultSet rs) {
-        try {
-            return Genre.builder()
-                    .id(rs.getInt("GENRE_ID"))
-                    .name(rs.getString("NAME"))
-                    .build();
-        } catch (SQLException e) {
-            throw new DatabaseException("Ошибка получения жанра");
-        }
+    @Override
+    public List<Film> searchFilms(boolean searchByTitle, boolean searchByDirector, String query,
+                                  Set<FilmField> fields) {
+        List<Integer> ids = searchIndex.search(searchByTitle, searchByDirector, query).stream()
+                .sorted(Comparator.<Integer>comparingInt(popularityIndex::getLikes).reversed()
+                        .thenComparing(Comparator.reverseOrder()))
+                .collect(Collectors.toList());
+        return getByIds(ids, fields);
+    }
+
+    private Mpa getMpaById(int id) {
+        return referenceData.getMpa(id);
     }
 
+    /**
+     * Собирает фильм только из колонок таблицы FILMS: у рейтинга заполнен лишь id,
+     * жанры, лайки и режиссеры догружаются пакетно в {@link #loadRelations(List, Set)}.
+     */
     public Film makeFilm(ResultSet rs) {
         try {
-            Film film = Film.builder()
+            return Film.builder()
                     .id(rs.getInt("ID"))
                     .name(rs.getString("NAME"))
                     .description(rs.getString("DESCRIPTION"))
                     .duration(rs.getInt("DURATION"))
                     .releaseDate(rs.getDate("RELEASE_DATE").toLocalDate())
-                    .mpa(getMpaById(rs.getInt("MPA_ID")))
+                    .mpa(Mpa.builder().id(rs.getInt("MPA_ID")).build())
+                    .directors(new HashSet<>())
                     .build();
-            film.setGenres(getGenresById(film.getId()));
-            film.setLikes(getLikesById(film.getId()));
-            film.setDirectors(getDirectorsByFilmId(film.getId()));
-            return film;
         } catch (SQLException e) {
             throw new DatabaseException("Ошибка получения фильма");
         }
     }
 
-    private HashSet<Director> getDirectorsByFilmId(int filmId) {
-        String sqlQuery = "SELECT director_id, name FROM directors " +
-                "WHERE director_id IN (SELECT director_id FROM films_and_directors WHERE film_id=?)";
-        return new HashSet<>(jdbcTemplate.query(sqlQuery, StorageUtils::directorMapRow, filmId));
+    /**
+     * Догружает связи сразу для всего списка фильмов: по одному запросу на каждую связь
+     * вместо запросов на каждый фильм. Жанры и режиссеры читаются, только если они есть в fields.
+     * Рейтинги, жанры и режиссеры берутся из {@link ReferenceDataCache}, из базы читаются только связи.
+     */
+    private List<Film> loadRelations(List<Film> films, Set<FilmField> fields) {
+        if (films.isEmpty()) {
+            return films;
+        }
+        Map<Integer, List<Film>> filmsById = films.stream()
+                .collect(Collectors.groupingBy(Film::getId));
+        Map<String, Object> params = Map.of("filmIds", filmsById.keySet());
+
+        if (fields.contains(FilmField.MPA)) {
+            films.forEach(film -> film.setMpa(referenceData.getMpa(film.getMpa().getId())));
+        }
+
+        if (fields.contains(FilmField.GENRES)) {
+            String genresQuery = "SELECT FILM_ID, GENRE_ID FROM FILM_GENRES WHERE FILM_ID IN (:filmIds);";
+            jdbcOperations.query(genresQuery, params, (ResultSet rs) -> {
+                Genre genre = referenceData.getGenre(rs.getInt("GENRE_ID"));
+                filmsById.get(rs.getInt("FILM_ID")).forEach(film -> film.getGenres().add(genre));
+            });
+        }
+
+        if (fields.contains(FilmField.DIRECTORS)) {
+            String directorsQuery = "SELECT FILM_ID, DIRECTOR_ID FROM FILMS_AND_DIRECTORS WHERE FILM_ID IN (:filmIds);";
+            jdbcOperations.query(directorsQuery, params, (ResultSet rs) -> {
+                Director director = referenceData.getDirector(rs.getInt("DIRECTOR_ID"));
+                if (director != null) {
+                    filmsById.get(rs.getInt("FILM_ID")).forEach(film -> film.getDirectors().add(director));
+                }
+            });
+        }
+        return films;
     }
 
-    private User makeUser(ResultSet rs) {
-        try {
-            return User.builder()
-                    .id(rs.getInt("ID"))
-                    .name(rs.getString("NAME"))
-                    .login(rs.getString("LOGIN"))
-                    .email(rs.getString("EMAIL"))
-                    .birthday(rs.getDate("BIRTHDAY").toLocalDate())
-                    .build();
-        } catch (SQLException e) {
-            throw new DatabaseException("Ошибка получения пользователя");
+    /**
+     * Догружает все связи и лайки. Лайки в JSON не попадают и нужны только фильму по id.
+     */
+    private List<Film> loadWithLikes(List<Film> films) {
+        loadRelations(films, FilmField.ALL);
+        if (films.isEmpty()) {
+            return films;
         }
+        Map<Integer, List<Film>> filmsById = films.stream()
+                .collect(Collectors.groupingBy(Film::getId));
+        String likesQuery = "SELECT FILM_ID, USER_ID FROM LIKES WHERE FILM_ID IN (:filmIds);";
+        jdbcOperations.query(likesQuery, Map.of("filmIds", filmsById.keySet()), (ResultSet rs) -> {
+            int userId = rs.getInt("USER_ID");
+            filmsById.get(rs.getInt("FILM_ID")).forEach(film -> film.getLikes().add(userId));
+        });
+        return films;
     }
 
     public Film deleteFilmById(int id) {
         Film film = getById(id);
         String sql = "DELETE FROM films WHERE id=?";
         jdbcTemplate.update(sql, id);
+        TransactionUtils.afterCommit(() -> {
+            idIndex.removeFilm(id);
+            filmCache.invalidate(id);
+            likesIndex.removeFilm(id);
+            popularityIndex.remove(id);
+            trendingIndex.removeFilm(id);
+            searchIndex.removeFilm(id);
+        });
         return film;
     }
 
+    /**
+     * Общие фильмы - пересечение множеств лайков из {@link UserLikesIndex},
+     * от самых популярных к менее популярным.
+     */
     @Override
     public List<Film> getCommonFilms(int userId, int friendId) {
-        String sqlQuery = "SELECT f.ID, f.MPA_ID, f.NAME, f.DESCRIPTION, f.RELEASE_DATE, f.DURATION " +
-                "FROM FILMS AS f " +
-                "INNER JOIN LIKES AS l1 ON f.ID = l1.FILM_ID AND l1.USER_ID = ? " +
-                "INNER JOIN LIKES as l2 ON l1.FILM_ID = l2.FILM_ID AND l2.USER_ID = ? " +
-                "LEFT JOIN LIKES AS l ON l.FILM_ID = f.ID " +
-                "GROUP BY f.ID";
-        return jdbcTemplate.query(sqlQuery, (rs, rowNum) -> makeFilm(rs), userId, friendId);
+        List<Integer> ids = likesIndex.getCommon(userId, friendId);
+        ids.sort(Comparator.<Integer>comparingInt(popularityIndex::getLikes).reversed()
+                .thenComparing(Comparator.naturalOrder()));
+        return getByIds(ids, FilmField.ALL);
     }
 }
\ No newline at end of file
@@ -0,0 +1,172 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntFunction;
+
+/**
+ * Кэш фильмов по id с вытеснением давно не читанных (LRU) и необязательным сроком жизни записи.
+ * Наружу всегда отдаются копии, чтобы вызывающий код не мог испортить закэшированный фильм.
+ * Перед загрузкой фильма в кэш ставится пустая запись-заглушка, и загруженный фильм кладется
+ * на ее место, только если она еще там. Инвалидация удаляет запись вместе с заглушкой, поэтому
+ * загрузка, начатая до инвалидации, не вернет в кэш устаревшую версию, а загрузки других
+ * фильмов она не затрагивает.
+ * Чтение не берет блокировок; при переполнении один поток вытесняет сразу десятую часть
+ * самых давно читанных записей. Счетчики попаданий, промахов и вытеснений доступны через getStats().
+ */
+@Component
+public class FilmCache {
+
+    private final int maxSize;
+    private final long ttlMs;
+    private final ConcurrentMap<Integer, CachedFilm> films = new ConcurrentHashMap<>();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public FilmCache(@Value("${filmorate.cache.films.max-size:10000}") int maxSize,
+                     @Value("${filmorate.cache.films.ttl-ms:0}") long ttlMs) {
+        this.maxSize = maxSize;
+        this.ttlMs = ttlMs;
+    }
+
+    /**
+     * Возвращает фильм из кэша, а при промахе загружает его через loader и кладет в кэш.
+     */
+    public Film get(int id, IntFunction<Film> loader) {
+        CachedFilm cached = films.get(id);
+        if (cached != null && cached.isLoaded() && !isExpired(cached)) {
+            cached.touch();
+            hits.increment();
+            return copyOf(cached.getFilm());
+        }
+        misses.increment();
+        CachedFilm placeholder = new CachedFilm(null);
+        boolean reserved = maxSize > 0 && (cached == null
+                ? films.putIfAbsent(id, placeholder) == null
+                : cached.isLoaded() && films.replace(id, cached, placeholder));
+        Film film;
+        try {
+            film = loader.apply(id);
+        } catch (RuntimeException e) {
+            films.remove(id, placeholder);
+            throw e;
+        }
+        if (!reserved) {
+            return film;
+        }
+        if (film == null) {
+            films.remove(id, placeholder);
+        } else if (films.replace(id, placeholder, new CachedFilm(copyOf(film)))) {
+            evictIfFull();
+        }
+        return film;
+    }
+
+    public boolean contains(int id) {
+        CachedFilm cached = films.get(id);
+        return cached != null && cached.isLoaded() && !isExpired(cached);
+    }
+
+    public void invalidate(int id) {
+        films.remove(id);
+    }
+
+    public void invalidateAll(Iterable<Integer> ids) {
+        ids.forEach(films::remove);
+    }
+
+    public void clear() {
+        films.clear();
+    }
+
+    public Stats getStats() {
+        return new Stats(films.size(), hits.sum(), misses.sum(), evictions.sum());
+    }
+
+    private void evictIfFull() {
+        if (films.size() <= maxSize || !evictionLock.tryLock()) {
+            return;
+        }
+        try {
+            int excess = films.size() - (maxSize - maxSize / 10);
+            if (excess <= 0) {
+                return;
+            }
+            List<Map.Entry<Integer, CachedFilm>> entries = new ArrayList<>(films.entrySet());
+            entries.sort(Comparator.comparingLong(entry -> entry.getValue().getLastAccess()));
+            entries.stream()
+                    .limit(excess)
+                    .filter(entry -> films.remove(entry.getKey(), entry.getValue()))
+                    .forEach(entry -> evictions.increment());
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    private boolean isExpired(CachedFilm cached) {
+        return ttlMs > 0 && System.currentTimeMillis() - cached.getLoadedAt() > ttlMs;
+    }
+
+    private static Film copyOf(Film film) {
+        Film copy = Film.builder()
+                .id(film.getId())
+                .name(film.getName())
+                .description(film.getDescription())
+                .duration(film.getDuration())
+                .releaseDate(film.getReleaseDate())
+                .mpa(film.getMpa())
+                .directors(film.getDirectors() == null ? null : new HashSet<>(film.getDirectors()))
+                .build();
+        copy.setLikes(film.getLikes());
+        copy.setGenres(film.getGenres());
+        return copy;
+    }
+
+    /**
+     * Запись кэша. Запись без фильма - заглушка на время загрузки.
+     */
+    @Getter
+    private static class CachedFilm {
+        private final Film film;
+        private final long loadedAt = System.currentTimeMillis();
+        private volatile long lastAccess = System.nanoTime();
+
+        CachedFilm(Film film) {
+            this.film = film;
+        }
+
+        boolean isLoaded() {
+            return film != null;
+        }
+
+        void touch() {
+            lastAccess = System.nanoTime();
+        }
+    }
+
+    @AllArgsConstructor
+    @Getter
+    @ToString
+    public static class Stats {
+        private final int size;
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+    }
+}
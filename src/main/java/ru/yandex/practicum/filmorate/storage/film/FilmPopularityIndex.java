@@ -0,0 +1,166 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import lombok.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+/**
+ * Индекс популярности фильмов в памяти.
+ * Держит фильмы упорядоченными по числу лайков (при равенстве - по id)
+ * одновременно в общем списке, в списках по жанрам и в списках по году выхода.
+ */
+@Component
+public class FilmPopularityIndex {
+
+    private static final Comparator<Entry> BY_POPULARITY = Comparator.comparingInt(Entry::getLikes).reversed()
+            .thenComparingInt(Entry::getFilmId);
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Integer, Entry> entries = new HashMap<>();
+    private final NavigableSet<Entry> all = new TreeSet<>(BY_POPULARITY);
+    private final Map<Integer, NavigableSet<Entry>> byGenre = new HashMap<>();
+    private final Map<Integer, NavigableSet<Entry>> byYear = new HashMap<>();
+
+    public void rebuild(Collection<Entry> newEntries) {
+        lock.writeLock().lock();
+        try {
+            entries.clear();
+            all.clear();
+            byGenre.clear();
+            byYear.clear();
+            newEntries.forEach(this::link);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Добавляет фильм или обновляет его год и жанры, сохраняя накопленное число лайков.
+     */
+    public void put(Film film) {
+        Set<Integer> genreIds = film.getGenres().stream()
+                .map(Genre::getId)
+                .collect(Collectors.toSet());
+        lock.writeLock().lock();
+        try {
+            Entry old = entries.get(film.getId());
+            int likes = old == null ? film.getLikes().size() : old.getLikes();
+            if (old != null) {
+                unlink(old);
+            }
+            link(new Entry(film.getId(), likes, film.getReleaseDate().getYear(), genreIds));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(int filmId) {
+        lock.writeLock().lock();
+        try {
+            Entry old = entries.get(filmId);
+            if (old != null) {
+                unlink(old);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void changeLikes(int filmId, int delta) {
+        lock.writeLock().lock();
+        try {
+            Entry old = entries.get(filmId);
+            if (old != null) {
+                unlink(old);
+                link(new Entry(filmId, old.getLikes() + delta, old.getYear(), old.getGenreIds()));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Возвращает id самых популярных фильмов с учетом необязательных фильтров по жанру и году.
+     */
+    public List<Integer> getPopular(int count, Integer genreId, Integer year) {
+        lock.readLock().lock();
+        try {
+            NavigableSet<Entry> source;
+            if (Objects.nonNull(genreId)) {
+                source = byGenre.getOrDefault(genreId, Collections.emptyNavigableSet());
+            } else if (Objects.nonNull(year)) {
+                source = byYear.getOrDefault(year, Collections.emptyNavigableSet());
+            } else {
+                source = all;
+            }
+            return source.stream()
+                    .filter(entry -> Objects.isNull(year) || entry.getYear() == year)
+                    .limit(count)
+                    .map(Entry::getFilmId)
+                    .collect(Collectors.toList());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int getLikes(int filmId) {
+        lock.readLock().lock();
+        try {
+            Entry entry = entries.get(filmId);
+            return entry == null ? 0 : entry.getLikes();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean isEmpty() {
+        lock.readLock().lock();
+        try {
+            return entries.isEmpty();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void link(Entry entry) {
+        entries.put(entry.getFilmId(), entry);
+        all.add(entry);
+        byYear.computeIfAbsent(entry.getYear(), year -> new TreeSet<>(BY_POPULARITY)).add(entry);
+        for (Integer genreId : entry.getGenreIds()) {
+            byGenre.computeIfAbsent(genreId, id -> new TreeSet<>(BY_POPULARITY)).add(entry);
+        }
+    }
+
+    private void unlink(Entry entry) {
+        entries.remove(entry.getFilmId());
+        all.remove(entry);
+        removeFrom(byYear, entry.getYear(), entry);
+        for (Integer genreId : entry.getGenreIds()) {
+            removeFrom(byGenre, genreId, entry);
+        }
+    }
+
+    private static void removeFrom(Map<Integer, NavigableSet<Entry>> sets, int key, Entry entry) {
+        NavigableSet<Entry> set = sets.get(key);
+        if (set != null) {
+            set.remove(entry);
+            if (set.isEmpty()) {
+                sets.remove(key);
+            }
+        }
+    }
+
+    @Value
+    public static class Entry {
+        int filmId;
+        int likes;
+        int year;
+        Set<Integer> genreIds;
+    }
+}
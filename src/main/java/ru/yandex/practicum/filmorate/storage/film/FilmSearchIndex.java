@@ -0,0 +1,193 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+/**
+ * Поисковый индекс в памяти по названиям фильмов и именам режиссеров.
+ * Подстрока ищется по триграммам: кандидаты - пересечение списков id для всех триграмм запроса,
+ * затем каждый кандидат проверяется на вхождение запроса целиком.
+ */
+@Component
+public class FilmSearchIndex {
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final TrigramIndex titles = new TrigramIndex();
+    private final TrigramIndex directors = new TrigramIndex();
+    private final Map<Integer, Set<Integer>> directorFilms = new HashMap<>();
+    private final Map<Integer, Set<Integer>> filmDirectors = new HashMap<>();
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            titles.clear();
+            directors.clear();
+            directorFilms.clear();
+            filmDirectors.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void putFilm(int filmId, String title) {
+        lock.writeLock().lock();
+        try {
+            titles.put(filmId, title);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeFilm(int filmId) {
+        lock.writeLock().lock();
+        try {
+            titles.remove(filmId);
+            unlinkFilm(filmId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void setFilmDirectors(int filmId, Collection<Integer> directorIds) {
+        lock.writeLock().lock();
+        try {
+            unlinkFilm(filmId);
+            for (Integer directorId : directorIds) {
+                directorFilms.computeIfAbsent(directorId, id -> new HashSet<>()).add(filmId);
+                filmDirectors.computeIfAbsent(filmId, id -> new HashSet<>()).add(directorId);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void putDirector(int directorId, String name) {
+        lock.writeLock().lock();
+        try {
+            directors.put(directorId, name);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeDirector(int directorId) {
+        lock.writeLock().lock();
+        try {
+            directors.remove(directorId);
+            Set<Integer> films = directorFilms.remove(directorId);
+            if (films != null) {
+                films.forEach(filmId -> removeFrom(filmDirectors, filmId, directorId));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Возвращает id фильмов, у которых название и/или имя одного из режиссеров
+     * содержит запрос без учета регистра.
+     */
+    public Set<Integer> search(boolean searchByTitle, boolean searchByDirector, String query) {
+        lock.readLock().lock();
+        try {
+            Set<Integer> films = new HashSet<>();
+            if (searchByTitle) {
+                films.addAll(titles.find(query));
+            }
+            if (searchByDirector) {
+                for (Integer directorId : directors.find(query)) {
+                    films.addAll(directorFilms.getOrDefault(directorId, Collections.emptySet()));
+                }
+            }
+            return films;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void unlinkFilm(int filmId) {
+        Set<Integer> linkedDirectors = filmDirectors.remove(filmId);
+        if (linkedDirectors != null) {
+            linkedDirectors.forEach(directorId -> removeFrom(directorFilms, directorId, filmId));
+        }
+    }
+
+    private static void removeFrom(Map<Integer, Set<Integer>> links, int key, int value) {
+        Set<Integer> values = links.get(key);
+        if (values != null) {
+            values.remove(value);
+            if (values.isEmpty()) {
+                links.remove(key);
+            }
+        }
+    }
+
+    private static class TrigramIndex {
+        private static final int GRAM_LENGTH = 3;
+        private final Map<Integer, String> texts = new HashMap<>();
+        private final Map<String, Set<Integer>> postings = new HashMap<>();
+
+        void clear() {
+            texts.clear();
+            postings.clear();
+        }
+
+        void put(int id, String text) {
+            remove(id);
+            String normalized = normalize(text);
+            texts.put(id, normalized);
+            for (String gram : grams(normalized)) {
+                postings.computeIfAbsent(gram, key -> new HashSet<>()).add(id);
+            }
+        }
+
+        void remove(int id) {
+            String old = texts.remove(id);
+            if (old == null) {
+                return;
+            }
+            for (String gram : grams(old)) {
+                Set<Integer> ids = postings.get(gram);
+                ids.remove(id);
+                if (ids.isEmpty()) {
+                    postings.remove(gram);
+                }
+            }
+        }
+
+        Set<Integer> find(String query) {
+            String normalized = normalize(query);
+            if (normalized.length() < GRAM_LENGTH) {
+                // для коротких запросов триграмм нет, проверяем все тексты
+                return texts.entrySet().stream()
+                        .filter(entry -> entry.getValue().contains(normalized))
+                        .map(Map.Entry::getKey)
+                        .collect(Collectors.toSet());
+            }
+            List<Set<Integer>> lists = grams(normalized).stream()
+                    .map(gram -> postings.getOrDefault(gram, Collections.emptySet()))
+                    .sorted(Comparator.comparingInt(Set::size))
+                    .collect(Collectors.toList());
+            return lists.get(0).stream()
+                    .filter(id -> lists.stream().allMatch(ids -> ids.contains(id)))
+                    .filter(id -> texts.get(id).contains(normalized))
+                    .collect(Collectors.toSet());
+        }
+
+        private static String normalize(String text) {
+            return text == null ? "" : text.toLowerCase(Locale.ROOT);
+        }
+
+        private static Set<String> grams(String text) {
+            Set<String> grams = new HashSet<>();
+            for (int i = 0; i + GRAM_LENGTH <= text.length(); i++) {
+                grams.add(text.substring(i, i + GRAM_LENGTH));
+            }
+            return grams;
+        }
+    }
+}
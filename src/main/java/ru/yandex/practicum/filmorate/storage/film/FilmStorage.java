@@ -1,32 +1,69 @@
 package ru.yandex.practicum.filmorate.storage.film;
 
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmField;
 import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.model.LikeStatus;
 
+import java.time.Duration;
+import java.util.Collection;
 import java.util.List;
+import java.util.Set;
+import java.util.function.ObjIntConsumer;
 
+/**
+ * Списочные чтения принимают fields: из базы читаются только связи, нужные для этих полей,
+ * для полного фильма передается {@link FilmField#ALL}. Лайки в списки не загружаются.
+ */
 public interface FilmStorage {
-    List<Film> getAll();
+    List<Film> getAll(Set<FilmField> fields);
 
-    List<Film> getPopular(int count, Integer genreId, Integer year);
+    List<Film> getPage(int afterId, int limit, Set<FilmField> fields);
+
+    /**
+     * Передает consumer каждый фильм со всеми связями, но без лайков, и число его лайков.
+     */
+    void exportAll(ObjIntConsumer<Film> consumer);
+
+    List<Film> getPopular(int count, Integer genreId, Integer year, Set<FilmField> fields);
+
+    /**
+     * Возвращает фильмы с наибольшим числом недавних лайков: лайк, поставленный время t назад,
+     * весит exp(-t / window).
+     */
+    List<Film> getTrending(Duration window, int count, Integer genreId, Integer year);
 
     Film create(Film film);
 
+    List<Integer> createAll(List<Film> films);
+
     Film update(Film film);
 
+    /**
+     * Возвращает фильм или бросает NotFoundException, если его нет.
+     */
     Film getById(int id);
 
-    Film addLike(int id, int userId);
+    LikeStatus addLike(int id, int userId);
+
+    LikeStatus removeLike(int id, int userId);
+
+    int getLikeCount(int id);
+
+    boolean hasLike(int id, int userId);
+
+    void addLikes(Collection<Like> likes);
 
-    Film removeLike(int id, int userId);
+    void removeLikes(Collection<Like> likes);
 
     boolean isExists(int id);
 
     Film deleteFilmById(int id);
 
-    List<Film> getFilmsByDirector(Director director);
+    List<Film> getFilmsByDirector(Director director, String sortBy, int limit, int offset, Set<FilmField> fields);
 
-    List<Film> searchFilms(boolean searchByTitle, boolean searchByDirector, String query);
+    List<Film> searchFilms(boolean searchByTitle, boolean searchByDirector, String query, Set<FilmField> fields);
 
     List<Film> getCommonFilms(int userId, int friendId);
 }
@@ -0,0 +1,177 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import lombok.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+/**
+ * Индекс трендов: для каждого окна хранит затухающий рейтинг фильмов,
+ * где лайк, поставленный время t назад, весит exp(-t / окно).
+ * Веса хранятся относительно опорного момента: вклад лайка в момент t равен exp((t - опорный момент) / окно),
+ * так что со временем меняются только рейтинги фильмов с новыми лайками, а порядок остальных сохраняется.
+ * Когда веса становятся слишком большими, все рейтинги разом пересчитываются к новому опорному моменту.
+ */
+@Component
+public class FilmTrendingIndex {
+
+    public static final List<Duration> WINDOWS = List.of(Duration.ofDays(1), Duration.ofDays(7), Duration.ofDays(30));
+    private static final double MAX_EXPONENT = 500;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Integer, FilmInfo> films = new HashMap<>();
+    private final Map<Duration, Ranking> rankings = new HashMap<>();
+
+    public FilmTrendingIndex() {
+        WINDOWS.forEach(window -> rankings.put(window, new Ranking(window)));
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            films.clear();
+            rankings.values().forEach(Ranking::clear);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void putFilm(int filmId, int year, Set<Integer> genreIds) {
+        lock.writeLock().lock();
+        try {
+            films.put(filmId, new FilmInfo(year, genreIds));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void putFilm(Film film) {
+        putFilm(film.getId(), film.getReleaseDate().getYear(), film.getGenres().stream()
+                .map(Genre::getId)
+                .collect(Collectors.toSet()));
+    }
+
+    public void removeFilm(int filmId) {
+        lock.writeLock().lock();
+        try {
+            films.remove(filmId);
+            rankings.values().forEach(ranking -> ranking.remove(filmId));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void addLike(int filmId, long likedAt) {
+        changeScore(filmId, likedAt, 1);
+    }
+
+    public void removeLike(int filmId, long likedAt) {
+        changeScore(filmId, likedAt, -1);
+    }
+
+    /**
+     * Возвращает id фильмов с наибольшим затухающим рейтингом за окно
+     * с учетом необязательных фильтров по жанру и году. Окно должно быть одним из {@link #WINDOWS}.
+     */
+    public List<Integer> getTrending(Duration window, int count, Integer genreId, Integer year) {
+        lock.readLock().lock();
+        try {
+            Ranking ranking = rankings.get(window);
+            if (ranking == null) {
+                throw new IllegalArgumentException("Индекс трендов не ведет окно " + window);
+            }
+            return ranking.entries.stream()
+                    .filter(entry -> matches(films.get(entry.getFilmId()), genreId, year))
+                    .limit(count)
+                    .map(Entry::getFilmId)
+                    .collect(Collectors.toList());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void changeScore(int filmId, long likedAt, int sign) {
+        lock.writeLock().lock();
+        try {
+            rankings.values().forEach(ranking -> ranking.add(filmId, likedAt, sign));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static boolean matches(FilmInfo info, Integer genreId, Integer year) {
+        if (info == null) {
+            return false;
+        }
+        return (Objects.isNull(genreId) || info.getGenreIds().contains(genreId))
+                && (Objects.isNull(year) || info.getYear() == year);
+    }
+
+    private static class Ranking {
+        private final double windowMs;
+        private final Map<Integer, Double> scores = new HashMap<>();
+        private final NavigableSet<Entry> entries = new TreeSet<>(Comparator.comparingDouble(Entry::getScore)
+                .reversed()
+                .thenComparingInt(Entry::getFilmId));
+        private long referenceTime = System.currentTimeMillis();
+
+        Ranking(Duration window) {
+            this.windowMs = window.toMillis();
+        }
+
+        void clear() {
+            scores.clear();
+            entries.clear();
+            referenceTime = System.currentTimeMillis();
+        }
+
+        void add(int filmId, long likedAt, int sign) {
+            double exponent = (likedAt - referenceTime) / windowMs;
+            if (exponent > MAX_EXPONENT) {
+                rescale(likedAt);
+                exponent = 0;
+            }
+            Double old = scores.get(filmId);
+            double score = (old == null ? 0 : old) + sign * Math.exp(exponent);
+            remove(filmId);
+            // снятие последнего лайка из-за погрешности может оставить не ровно ноль
+            if (score > Math.exp(exponent) * 1e-9) {
+                scores.put(filmId, score);
+                entries.add(new Entry(filmId, score));
+            }
+        }
+
+        void remove(int filmId) {
+            Double old = scores.remove(filmId);
+            if (old != null) {
+                entries.remove(new Entry(filmId, old));
+            }
+        }
+
+        private void rescale(long newReferenceTime) {
+            double factor = Math.exp((referenceTime - newReferenceTime) / windowMs);
+            referenceTime = newReferenceTime;
+            entries.clear();
+            scores.replaceAll((filmId, score) -> score * factor);
+            scores.forEach((filmId, score) -> entries.add(new Entry(filmId, score)));
+        }
+    }
+
+    @Value
+    private static class Entry {
+        int filmId;
+        double score;
+    }
+
+    @Value
+    private static class FilmInfo {
+        int year;
+        Set<Integer> genreIds;
+    }
+}
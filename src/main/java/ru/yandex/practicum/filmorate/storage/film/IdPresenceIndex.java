@@ -0,0 +1,70 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Множества id существующих пользователей и фильмов. Заполняется при старте из таблиц USERS
+ * и FILMS, дальше обновляется хранилищами при создании и удалении. Позволяет проверять
+ * существование без запроса к базе.
+ */
+@Component
+public class IdPresenceIndex {
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final CompressedBitmap users = new CompressedBitmap();
+    private final CompressedBitmap films = new CompressedBitmap();
+
+    public void clearUsers() {
+        write(users::clear);
+    }
+
+    public void clearFilms() {
+        write(films::clear);
+    }
+
+    public void addUser(int userId) {
+        write(() -> users.add(userId));
+    }
+
+    public void removeUser(int userId) {
+        write(() -> users.remove(userId));
+    }
+
+    public void addFilm(int filmId) {
+        write(() -> films.add(filmId));
+    }
+
+    public void removeFilm(int filmId) {
+        write(() -> films.remove(filmId));
+    }
+
+    public boolean hasUser(int userId) {
+        lock.readLock().lock();
+        try {
+            return users.contains(userId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean hasFilm(int filmId) {
+        lock.readLock().lock();
+        try {
+            return films.contains(filmId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void write(Runnable action) {
+        lock.writeLock().lock();
+        try {
+            action.run();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
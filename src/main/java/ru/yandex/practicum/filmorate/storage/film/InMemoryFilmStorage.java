@@ -7,12 +7,20 @@ import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
 import ru.yandex.practicum.filmorate.model.Director;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmField;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.model.LikeStatus;
 
+import java.time.Duration;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.ObjIntConsumer;
 import java.util.stream.Collectors;
 
 @Component("InMemoryFilmStorage")
@@ -23,11 +31,25 @@ public class InMemoryFilmStorage implements FilmStorage {
     private int globalId = 0;
 
     @Override
-    public List<Film> getAll() {
+    public List<Film> getAll(Set<FilmField> fields) {
         log.info("Запрошен список всех фильмов");
         return new ArrayList<>(films.values());
     }
 
+    @Override
+    public List<Film> getPage(int afterId, int limit, Set<FilmField> fields) {
+        return films.values().stream()
+                .filter(film -> film.getId() > afterId)
+                .sorted(Comparator.comparingInt(Film::getId))
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public void exportAll(ObjIntConsumer<Film> consumer) {
+        films.values().forEach(film -> consumer.accept(film, film.getLikes().size()));
+    }
+
     @Override
     public Film create(Film film) {
         validateReleaseDate(film);
@@ -38,6 +60,13 @@ public class InMemoryFilmStorage implements FilmStorage {
         return film;
     }
 
+    @Override
+    public List<Integer> createAll(List<Film> films) {
+        return films.stream()
+                .map(film -> create(film).getId())
+                .collect(Collectors.toList());
+    }
+
     @Override
     public Film update(Film updatedFilm) {
         validateReleaseDate(updatedFilm);
@@ -54,27 +83,51 @@ public class InMemoryFilmStorage implements FilmStorage {
     @Override
     public Film getById(int id) {
         log.info("Запрошен фильм с ID: '{}'", id);
-        return films.get(id);
+        Film film = films.get(id);
+        if (film == null) {
+            throw new NotFoundException("Фильм с ID: '" + id + "' не найден");
+        }
+        return film;
     }
 
     @Override
-    public Film addLike(int id, int userId) {
+    public LikeStatus addLike(int id, int userId) {
         Film film = films.get(id);
         film.getLikes().add(userId);
         log.info("Пользователь с ID: '{}' поставил лайк фильму с ID: '{}'", userId, id);
-        return film;
+        return new LikeStatus(id, film.getLikes().size(), true);
     }
 
     @Override
-    public Film removeLike(int id, int userId) {
+    public LikeStatus removeLike(int id, int userId) {
         Film film = films.get(id);
         film.getLikes().remove(userId);
         log.info("Пользователь с ID: '{}' удалил лайк с фильма с ID: '{}'", userId, id);
-        return film;
+        return new LikeStatus(id, film.getLikes().size(), false);
+    }
+
+    @Override
+    public int getLikeCount(int id) {
+        return getById(id).getLikes().size();
+    }
+
+    @Override
+    public boolean hasLike(int id, int userId) {
+        return getById(id).getLikes().contains(userId);
+    }
+
+    @Override
+    public void addLikes(Collection<Like> likes) {
+        likes.forEach(like -> addLike(like.getFilmId(), like.getUserId()));
+    }
+
+    @Override
+    public void removeLikes(Collection<Like> likes) {
+        likes.forEach(like -> removeLike(like.getFilmId(), like.getUserId()));
     }
 
     @Override
-    public List<Film> getPopular(int count, Integer genreId, Integer year) {
+    public List<Film> getPopular(int count, Integer genreId, Integer year, Set<FilmField> fields) {
         log.info("Запрошен список {} самых популярных фильмов", count);
         return films.values().stream()
                 .sorted((film1, film2) -> film2.getLikes().size() - film1.getLikes().size())
@@ -82,13 +135,22 @@ public class InMemoryFilmStorage implements FilmStorage {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Время лайков в памяти не хранится, поэтому тренды совпадают с популярными фильмами.
+     */
+    @Override
+    public List<Film> getTrending(Duration window, int count, Integer genreId, Integer year) {
+        return getPopular(count, genreId, year, FilmField.ALL);
+    }
+
     @Override
     public boolean isExists(int id) {
         return films.containsKey(id);
     }
 
     @Override
-    public List<Film> getFilmsByDirector(Director director) {
+    public List<Film> getFilmsByDirector(Director director, String sortBy, int limit, int offset,
+                                         Set<FilmField> fields) {
         throw new NotImplementedException();
     }
 
@@ -107,7 +169,8 @@ public class InMemoryFilmStorage implements FilmStorage {
     }
 
     @Override
-    public List<Film> searchFilms(boolean searchByTitle, boolean searchByDirector, String query) {
+    public List<Film> searchFilms(boolean searchByTitle, boolean searchByDirector, String query,
+                                  Set<FilmField> fields) {
         return new ArrayList<>();
     }
 
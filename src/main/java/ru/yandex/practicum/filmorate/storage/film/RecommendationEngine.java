@@ -0,0 +1,98 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Рекомендации фильмов коллаборативной фильтрацией по матрице лайков из UserLikesIndex.
+ * Для пользователя находятся соседи - те, кто лайкал те же фильмы, - и из них берутся neighbours
+ * самых похожих. Похожесть считается по мере Жаккара (общие лайки / все лайки обоих) или
+ * просто по числу общих лайков. Каждый сосед голосует весом своей похожести за фильмы,
+ * которые пользователь еще не лайкал; возвращаются limit фильмов с наибольшей суммой голосов.
+ */
+@Component
+public class RecommendationEngine {
+
+    public enum Similarity {
+        JACCARD,
+        OVERLAP
+    }
+
+    private final UserLikesIndex likesIndex;
+    private final int neighbours;
+    private final int limit;
+    private final Similarity similarity;
+
+    public RecommendationEngine(UserLikesIndex likesIndex,
+                                @Value("${filmorate.recommendations.neighbours:20}") int neighbours,
+                                @Value("${filmorate.recommendations.limit:20}") int limit,
+                                @Value("${filmorate.recommendations.similarity:JACCARD}") Similarity similarity) {
+        this.likesIndex = likesIndex;
+        this.neighbours = neighbours;
+        this.limit = limit;
+        this.similarity = similarity;
+    }
+
+    /**
+     * Возвращает id рекомендованных фильмов, начиная с самого подходящего.
+     */
+    public List<Integer> recommend(int userId) {
+        int[] liked = likesIndex.getLikedFilms(userId);
+        if (liked.length == 0) {
+            return List.of();
+        }
+        Map<Integer, Integer> overlaps = new HashMap<>();
+        for (int filmId : liked) {
+            for (int otherUserId : likesIndex.getLikers(filmId)) {
+                if (otherUserId != userId) {
+                    overlaps.merge(otherUserId, 1, Integer::sum);
+                }
+            }
+        }
+        List<Neighbour> nearest = overlaps.entrySet().stream()
+                .map(entry -> new Neighbour(entry.getKey(), weight(entry.getValue(), liked.length,
+                        likesIndex.getLikedFilmsCount(entry.getKey()))))
+                .sorted(Comparator.comparingDouble(Neighbour::getWeight).reversed()
+                        .thenComparingInt(Neighbour::getUserId))
+                .limit(neighbours)
+                .collect(Collectors.toList());
+
+        Map<Integer, Double> votes = new HashMap<>();
+        for (Neighbour neighbour : nearest) {
+            for (int filmId : likesIndex.getLikedFilms(neighbour.getUserId())) {
+                if (Arrays.binarySearch(liked, filmId) < 0) {
+                    votes.merge(filmId, neighbour.getWeight(), Double::sum);
+                }
+            }
+        }
+        return votes.entrySet().stream()
+                .sorted(Map.Entry.<Integer, Double>comparingByValue().reversed()
+                        .thenComparing(Map.Entry.comparingByKey()))
+                .limit(limit)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+    }
+
+    private double weight(int overlap, int likedCount, int otherLikedCount) {
+        if (similarity == Similarity.OVERLAP) {
+            return overlap;
+        }
+        return (double) overlap / (likedCount + otherLikedCount - overlap);
+    }
+
+    @AllArgsConstructor
+    @Getter
+    private static class Neighbour {
+        private final int userId;
+        private final double weight;
+    }
+}
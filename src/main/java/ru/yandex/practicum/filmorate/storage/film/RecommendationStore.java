@@ -0,0 +1,139 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Заранее посчитанные рекомендации. Фоновая задача раз в refresh.interval-ms пересчитывает
+ * до batch-size пользователей: сначала тех, чьи лайки изменились с прошлого запуска,
+ * затем пользователей с лайками, для которых рекомендаций еще нет, затем самые старые записи.
+ * Запрос отдает готовую запись и считает рекомендации сам, только если записи нет или лайки
+ * самого пользователя с тех пор изменились; изменения у соседей доходят до записи со следующим пересчетом.
+ */
+@Slf4j
+@Component
+public class RecommendationStore {
+
+    private final RecommendationEngine engine;
+    private final UserLikesIndex likesIndex;
+    private final boolean refreshEnabled;
+    private final long refreshIntervalMs;
+    private final int batchSize;
+    private final Map<Integer, Entry> entries = new ConcurrentHashMap<>();
+    private final Set<Integer> dirty = ConcurrentHashMap.newKeySet();
+    private ScheduledExecutorService executor;
+
+    public RecommendationStore(RecommendationEngine engine,
+                               UserLikesIndex likesIndex,
+                               @Value("${filmorate.recommendations.refresh.enabled:true}") boolean refreshEnabled,
+                               @Value("${filmorate.recommendations.refresh.interval-ms:60000}") long refreshIntervalMs,
+                               @Value("${filmorate.recommendations.refresh.batch-size:1000}") int batchSize) {
+        this.engine = engine;
+        this.likesIndex = likesIndex;
+        this.refreshEnabled = refreshEnabled;
+        this.refreshIntervalMs = refreshIntervalMs;
+        this.batchSize = batchSize;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!refreshEnabled) {
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "recommendation-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::refreshQuietly, refreshIntervalMs, refreshIntervalMs,
+                TimeUnit.MILLISECONDS);
+        log.info("Включен фоновый пересчет рекомендаций: до {} пользователей раз в {} мс", batchSize, refreshIntervalMs);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Возвращает посчитанные рекомендации пользователя, а если их нет или они отмечены
+     * к пересчету - считает и сохраняет.
+     */
+    public Entry get(int userId) {
+        Entry entry = entries.get(userId);
+        return entry != null && !dirty.contains(userId) ? entry : compute(userId);
+    }
+
+    /**
+     * Отмечает, что лайки пользователя изменились и его рекомендации надо пересчитать в первую очередь.
+     */
+    public void markDirty(int userId) {
+        dirty.add(userId);
+    }
+
+    public void remove(int userId) {
+        entries.remove(userId);
+        dirty.remove(userId);
+    }
+
+    /**
+     * Пересчитывает очередную пачку рекомендаций и возвращает число пересчитанных пользователей.
+     */
+    public synchronized int refresh() {
+        List<Integer> queue = new ArrayList<>(dirty);
+        if (queue.size() < batchSize) {
+            Set<Integer> queued = new HashSet<>(queue);
+            likesIndex.getUserIds().stream()
+                    .filter(userId -> !queued.contains(userId))
+                    .sorted(Comparator.comparing(this::computedAt))
+                    .limit(batchSize - queue.size())
+                    .forEach(queue::add);
+        }
+        List<Integer> batch = queue.subList(0, Math.min(batchSize, queue.size()));
+        batch.forEach(this::compute);
+        return batch.size();
+    }
+
+    private void refreshQuietly() {
+        try {
+            int refreshed = refresh();
+            log.debug("Пересчитаны рекомендации {} пользователей", refreshed);
+        } catch (RuntimeException e) {
+            log.error("Не удалось пересчитать рекомендации", e);
+        }
+    }
+
+    private Entry compute(int userId) {
+        // снимаем отметку до расчета, чтобы не потерять лайк, пришедший во время него
+        dirty.remove(userId);
+        Entry entry = new Entry(engine.recommend(userId), Instant.now());
+        entries.put(userId, entry);
+        return entry;
+    }
+
+    private Instant computedAt(int userId) {
+        Entry entry = entries.get(userId);
+        return entry == null ? Instant.MIN : entry.getComputedAt();
+    }
+
+    @AllArgsConstructor
+    @Getter
+    public static class Entry {
+        private final List<Integer> filmIds;
+        private final Instant computedAt;
+    }
+}
@@ -0,0 +1,162 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Индекс лайков в памяти - разреженная матрица пользователь-фильм, хранимая в обе стороны:
+ * для каждого пользователя сжатое множество id понравившихся фильмов, для каждого фильма -
+ * множество лайкнувших его пользователей. Отвечает, лайкнул ли пользователь фильм, находит общие
+ * фильмы двух пользователей пересечением их множеств и дает строки и столбцы матрицы для рекомендаций.
+ */
+@Component
+public class UserLikesIndex {
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Integer, CompressedBitmap> likedFilms = new HashMap<>();
+    private final Map<Integer, CompressedBitmap> likers = new HashMap<>();
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            likedFilms.clear();
+            likers.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void add(int userId, int filmId) {
+        lock.writeLock().lock();
+        try {
+            likedFilms.computeIfAbsent(userId, id -> new CompressedBitmap()).add(filmId);
+            likers.computeIfAbsent(filmId, id -> new CompressedBitmap()).add(userId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(int userId, int filmId) {
+        lock.writeLock().lock();
+        try {
+            removeFrom(likedFilms, userId, filmId);
+            removeFrom(likers, filmId, userId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeUser(int userId) {
+        lock.writeLock().lock();
+        try {
+            CompressedBitmap films = likedFilms.remove(userId);
+            if (films != null) {
+                films.forEach(filmId -> removeFrom(likers, filmId, userId));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeFilm(int filmId) {
+        lock.writeLock().lock();
+        try {
+            CompressedBitmap users = likers.remove(filmId);
+            if (users != null) {
+                users.forEach(userId -> removeFrom(likedFilms, userId, filmId));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean hasLiked(int userId, int filmId) {
+        lock.readLock().lock();
+        try {
+            CompressedBitmap films = likedFilms.get(userId);
+            return films != null && films.contains(filmId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Возвращает id фильмов, которые понравились обоим пользователям, в произвольном порядке.
+     */
+    public List<Integer> getCommon(int userId, int otherUserId) {
+        lock.readLock().lock();
+        try {
+            CompressedBitmap films = likedFilms.get(userId);
+            CompressedBitmap otherFilms = likedFilms.get(otherUserId);
+            List<Integer> common = new ArrayList<>();
+            if (films != null && otherFilms != null) {
+                films.forEachAnd(otherFilms, common::add);
+            }
+            return common;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Возвращает id всех пользователей, у которых есть хотя бы один лайк.
+     */
+    public List<Integer> getUserIds() {
+        lock.readLock().lock();
+        try {
+            return new ArrayList<>(likedFilms.keySet());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Возвращает id фильмов, лайкнутых пользователем, по возрастанию.
+     */
+    public int[] getLikedFilms(int userId) {
+        return toArray(likedFilms, userId);
+    }
+
+    public int getLikedFilmsCount(int userId) {
+        lock.readLock().lock();
+        try {
+            CompressedBitmap films = likedFilms.get(userId);
+            return films == null ? 0 : films.cardinality();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Возвращает id пользователей, лайкнувших фильм, по возрастанию.
+     */
+    public int[] getLikers(int filmId) {
+        return toArray(likers, filmId);
+    }
+
+    private int[] toArray(Map<Integer, CompressedBitmap> rows, int id) {
+        lock.readLock().lock();
+        try {
+            CompressedBitmap row = rows.get(id);
+            return row == null ? new int[0] : row.toArray();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static void removeFrom(Map<Integer, CompressedBitmap> rows, int id, int value) {
+        CompressedBitmap row = rows.get(id);
+        if (row != null) {
+            row.remove(value);
+            if (row.isEmpty()) {
+                rows.remove(id);
+            }
+        }
+    }
+}
@@ -8,6 +8,7 @@ import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.jdbc.support.rowset.SqlRowSet;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.exception.DatabaseException;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Review;
@@ -24,6 +25,12 @@ import java.util.Objects;
 @Slf4j
 public class DbReviewStorage implements ReviewStorage {
 
+    private static final String LOCK_REVIEW_QUERY = "SELECT REVIEW_ID FROM REVIEWS WHERE REVIEW_ID=? FOR UPDATE;";
+    private static final String REACTION_QUERY = "SELECT LIKE_FLAG FROM REVIEWS_LIKES WHERE REVIEW_ID=? AND USER_ID=?;";
+    private static final String MERGE_REACTION_QUERY = "MERGE INTO REVIEWS_LIKES (USER_ID, REVIEW_ID, LIKE_FLAG) " +
+            "KEY (USER_ID, REVIEW_ID) VALUES (?, ?, ?);";
+    private static final String CHANGE_USEFUL_QUERY = "UPDATE REVIEWS SET USEFUL = USEFUL + ? WHERE REVIEW_ID=?;";
+
     private final JdbcOperations jdbcTemplate;
 
     @Override
@@ -48,21 +55,25 @@ public class DbReviewStorage implements ReviewStorage {
     public Review update(Review review) {
         int reviewId = review.getReviewId();
         String sqlQuery = "UPDATE REVIEWS SET CONTENT=?, IS_POSITIVE=? WHERE REVIEW_ID=?;";
-        jdbcTemplate.update(sqlQuery,
+        int updated = jdbcTemplate.update(sqlQuery,
                 review.getContent(),
                 review.getIsPositive(),
                 reviewId);
+        if (updated == 0) {
+            throw new NotFoundException("Отзыв с ID: '" + reviewId + "' не найден");
+        }
         log.info("Отзыв с ID: '{}' обновлен", reviewId);
         return getById(reviewId);
     }
 
     @Override
     public boolean remove(int id) {
-        int reviewId = getById(id).getReviewId();
         String sqlQuery = "DELETE FROM REVIEWS WHERE REVIEW_ID = ?";
-        jdbcTemplate.update(sqlQuery, id);
-        log.info("Отзыв с ID: '{}' удален", reviewId);
-        return !isExists(reviewId);
+        if (jdbcTemplate.update(sqlQuery, id) == 0) {
+            throw new NotFoundException("Отзыв с ID: '" + id + "' не найден");
+        }
+        log.info("Отзыв с ID: '{}' удален", id);
+        return true;
     }
 
     @Override
@@ -78,86 +89,76 @@ public class DbReviewStorage implements ReviewStorage {
 
     @Override
     public List<Review> get(int count) {
-        String query = "SELECT * FROM REVIEWS ORDER BY USEFUL DESC LIMIT ?;";
+        String query = "SELECT * FROM REVIEWS ORDER BY USEFUL DESC, REVIEW_ID LIMIT ?;";
         log.info("Запрос {} полезных отзывов", count);
         return jdbcTemplate.query(query, (rs, rowNum) -> makeReview(rs), count);
     }
 
     @Override
     public List<Review> getByFilmId(int filmId, int count) {
-        String query = "SELECT * FROM REVIEWS WHERE FILM_ID=? ORDER BY USEFUL DESC LIMIT ?;";
+        String query = "SELECT * FROM REVIEWS WHERE FILM_ID=? ORDER BY USEFUL DESC, REVIEW_ID LIMIT ?;";
         log.info("Запрос {} полезных отзывов фильма с ID: '{}'", count, filmId);
         return jdbcTemplate.query(query, (rs, rowNum) -> makeReview(rs), filmId, count);
     }
 
+    /**
+     * Условие USEFUL <= afterUseful дает диапазон по индексу (useful DESC, review_id),
+     * остальное отсекает уже выданные отзывы с той же полезностью.
+     */
+    @Override
+    public List<Review> getPage(int afterUseful, int afterId, int count) {
+        String query = "SELECT * FROM REVIEWS WHERE USEFUL <= ? AND (USEFUL < ? OR REVIEW_ID > ?) " +
+                "ORDER BY USEFUL DESC, REVIEW_ID LIMIT ?;";
+        log.info("Запрос {} полезных отзывов после ({}, {})", count, afterUseful, afterId);
+        return jdbcTemplate.query(query, (rs, rowNum) -> makeReview(rs),
+                afterUseful, afterUseful, afterId, count);
+    }
+
     @Override
+    public List<Review> getPageByFilmId(int filmId, int afterUseful, int afterId, int count) {
+        String query = "SELECT * FROM REVIEWS WHERE FILM_ID=? AND USEFUL <= ? AND (USEFUL < ? OR REVIEW_ID > ?) " +
+                "ORDER BY USEFUL DESC, REVIEW_ID LIMIT ?;";
+        log.info("Запрос {} полезных отзывов фильма с ID: '{}' после ({}, {})", count, filmId, afterUseful, afterId);
+        return jdbcTemplate.query(query, (rs, rowNum) -> makeReview(rs),
+                filmId, afterUseful, afterUseful, afterId, count);
+    }
+
+    @Override
+    @Transactional
     public Review setLike(int reviewId, int userId) {
-        if (isReactionExists(reviewId, userId)) {
-            setFlagIfExists(true, reviewId, userId);
-            int useful = getUseful(reviewId);
-            useful += 1;
-            setUseful(useful, reviewId);
-        } else {
-            setFlagIfNotExists(true, reviewId, userId);
-            int useful = getUseful(reviewId);
-            useful += 1;
-            setUseful(useful, reviewId);
-        }
+        changeReaction(reviewId, userId, true);
         log.info("На отзыв с ID: '{}' поставлен лайк от пользователя с ID: '{}'", reviewId, userId);
         return getById(reviewId);
     }
 
     @Override
+    @Transactional
     public Review setDislike(int reviewId, int userId) {
-        if (isReactionExists(reviewId, userId)) {
-            setFlagIfExists(false, reviewId, userId);
-            int useful = getUseful(reviewId);
-            useful -= 1;
-            setUseful(useful, reviewId);
-        } else {
-            setFlagIfNotExists(false, reviewId, userId);
-            int useful = getUseful(reviewId);
-            useful -= 1;
-            setUseful(useful, reviewId);
-        }
+        changeReaction(reviewId, userId, false);
         log.info("На отзыв с ID: '{}' поставлен дизлайк от пользователя с ID: '{}'", reviewId, userId);
         return getById(reviewId);
     }
 
     @Override
+    @Transactional
     public boolean removeLike(int reviewId, int userId) {
-        if (isReactionExists(reviewId, userId)) {
-            if (getFlag(reviewId, userId)) {
-                setFlagIfExists(null, reviewId, userId);
-                int useful = getUseful(reviewId);
-                useful -= 1;
-                setUseful(useful, reviewId);
-                log.info("У отзыва с ID: '{}' удален лайк от пользователя с ID: '{}'", reviewId, userId);
-                return true;
-            } else {
-                return false;
-            }
-        } else {
+        if (!Boolean.TRUE.equals(lockReaction(reviewId, userId))) {
             return false;
         }
+        saveReaction(reviewId, userId, true, null);
+        log.info("У отзыва с ID: '{}' удален лайк от пользователя с ID: '{}'", reviewId, userId);
+        return true;
     }
 
     @Override
+    @Transactional
     public boolean removeDislike(int reviewId, int userId) {
-        if (isReactionExists(reviewId, userId)) {
-            if (!getFlag(reviewId, userId)) {
-                setFlagIfExists(null, reviewId, userId);
-                int useful = getUseful(reviewId);
-                useful += 1;
-                setUseful(useful, reviewId);
-                log.info("У отзыва с ID: '{}' удален дизлайк от пользователя с ID: '{}'", reviewId, userId);
-                return true;
-            } else {
-                return false;
-            }
-        } else {
+        if (!Boolean.FALSE.equals(lockReaction(reviewId, userId))) {
             return false;
         }
+        saveReaction(reviewId, userId, false, null);
+        log.info("У отзыва с ID: '{}' удален дизлайк от пользователя с ID: '{}'", reviewId, userId);
+        return true;
     }
 
     @Override
@@ -186,48 +187,42 @@ public class DbReviewStorage implements ReviewStorage {
         }
     }
 
-    private Boolean getFlag(int reviewId, int userId) {
-        String sqlQuery = "SELECT LIKE_FLAG FROM REVIEWS_LIKES WHERE REVIEW_ID=? AND USER_ID=?";
-        SqlRowSet usefulRows = jdbcTemplate.queryForRowSet(sqlQuery, reviewId, userId);
-        if (usefulRows.next()) {
-            return usefulRows.getBoolean("LIKE_FLAG");
-        } else {
-            throw new DatabaseException("Не удалось получить статус лайка/дизлайка");
+    private void changeReaction(int reviewId, int userId, boolean flag) {
+        Boolean oldFlag = lockReaction(reviewId, userId);
+        if (!Objects.equals(oldFlag, flag)) {
+            saveReaction(reviewId, userId, oldFlag, flag);
         }
     }
 
-    private void setFlagIfNotExists(Boolean flag, int reviewId, int userId) {
-        String sqlQuery = "INSERT INTO REVIEWS_LIKES (USER_ID, REVIEW_ID, LIKE_FLAG) VALUES (?, ?, ?)";
-        jdbcTemplate.update(sqlQuery, userId, reviewId, flag);
-    }
-
-    private void setFlagIfExists(Boolean flag, int reviewId, int userId) {
-        String sqlQuery = "UPDATE REVIEWS_LIKES SET LIKE_FLAG=? WHERE REVIEW_ID=? AND USER_ID=?;";
-        jdbcTemplate.update(sqlQuery, flag, reviewId, userId);
-    }
-
-    private int getUseful(int reviewId) {
-        String sqlQuery = "SELECT USEFUL FROM REVIEWS WHERE REVIEW_ID=?";
-        SqlRowSet usefulRows = jdbcTemplate.queryForRowSet(sqlQuery, reviewId);
-        if (usefulRows.next()) {
-            return usefulRows.getInt("USEFUL");
-        } else {
-            throw new DatabaseException("Не удалось получить рейтинг отзыва");
+    /**
+     * Блокирует строку отзыва до конца транзакции и возвращает текущую реакцию пользователя:
+     * true - лайк, false - дизлайк, null - реакции нет. Пока строка заблокирована, параллельные
+     * голоса за тот же отзыв ждут, поэтому разница для USEFUL считается по актуальному флагу.
+     */
+    private Boolean lockReaction(int reviewId, int userId) {
+        List<Integer> reviews = jdbcTemplate.queryForList(LOCK_REVIEW_QUERY, Integer.class, reviewId);
+        if (reviews.isEmpty()) {
+            throw new NotFoundException("Отзыв с ID: '" + reviewId + "' не найден");
+        }
+        List<Boolean> flags = jdbcTemplate.queryForList(REACTION_QUERY, Boolean.class, reviewId, userId);
+        return flags.isEmpty() ? null : flags.get(0);
+    }
+
+    /**
+     * Записывает новую реакцию одним MERGE и сдвигает USEFUL на разницу между новой и старой.
+     */
+    private void saveReaction(int reviewId, int userId, Boolean oldFlag, Boolean newFlag) {
+        jdbcTemplate.update(MERGE_REACTION_QUERY, userId, reviewId, newFlag);
+        int delta = weight(newFlag) - weight(oldFlag);
+        if (delta != 0) {
+            jdbcTemplate.update(CHANGE_USEFUL_QUERY, delta, reviewId);
         }
     }
 
-    private void setUseful(int useful, int reviewId) {
-        String sqlQuery = "UPDATE REVIEWS SET USEFUL=? WHERE REVIEW_ID=?;";
-        jdbcTemplate.update(sqlQuery, useful, reviewId);
-    }
-
-    private boolean isReactionExists(int reviewId, int userId) {
-        String sqlQuery = "SELECT USER_ID FROM REVIEWS_LIKES WHERE REVIEW_ID=? AND USER_ID=?";
-        SqlRowSet userRows = jdbcTemplate.queryForRowSet(sqlQuery, reviewId, userId);
-        if (userRows.next()) {
-            int userIdFromReviewsLikes = userRows.getInt("USER_ID");
-            return userIdFromReviewsLikes == reviewId;
+    private static int weight(Boolean flag) {
+        if (flag == null) {
+            return 0;
         }
-        return false;
+        return flag ? 1 : -1;
     }
-}
\ No newline at end of file
+}
@@ -18,6 +18,14 @@ public interface ReviewStorage {
 
     List<Review> getByFilmId(int filmId, int count);
 
+    /**
+     * Следующая страница отзывов после курсора (afterUseful, afterId): отзывы идут по убыванию
+     * полезности, при равной полезности - по возрастанию id.
+     */
+    List<Review> getPage(int afterUseful, int afterId, int count);
+
+    List<Review> getPageByFilmId(int filmId, int afterUseful, int afterId, int count);
+
     Review setLike(int reviewId, int userId);
 
     Review setDislike(int reviewId, int userId);
@@ -3,17 +3,27 @@ package ru.yandex.practicum.filmorate.storage.user;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Primary;
 import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcOperations;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.jdbc.support.rowset.SqlRowSet;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.exception.DatabaseException;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
-import ru.yandex.practicum.filmorate.model.Film;
-import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.FilmField;
+import ru.yandex.practicum.filmorate.model.Recommendations;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.TransactionUtils;
 import ru.yandex.practicum.filmorate.storage.film.DbFilmStorage;
+import ru.yandex.practicum.filmorate.storage.film.FilmCache;
+import ru.yandex.practicum.filmorate.storage.film.FilmPopularityIndex;
+import ru.yandex.practicum.filmorate.storage.film.FilmTrendingIndex;
+import ru.yandex.practicum.filmorate.storage.film.IdPresenceIndex;
+import ru.yandex.practicum.filmorate.storage.film.RecommendationStore;
+import ru.yandex.practicum.filmorate.storage.film.UserLikesIndex;
 
+import javax.annotation.PostConstruct;
 import java.sql.Date;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -27,14 +37,59 @@ public class DbUserStorage implements UserStorage {
 
     private final JdbcOperations jdbcTemplate;
 
+    private final NamedParameterJdbcOperations jdbcOperations;
+
     private final DbFilmStorage dbFilmStorage;
 
+    private final FilmPopularityIndex popularityIndex;
+
+    private final FilmCache filmCache;
+
+    private final UserLikesIndex likesIndex;
+
+    private final FilmTrendingIndex trendingIndex;
+
+    private final FriendGraph friendGraph;
+
+    private final RecommendationStore recommendationStore;
+
+    private final IdPresenceIndex idIndex;
+
+    /**
+     * Загружает id существующих пользователей для проверок без запроса к базе.
+     */
+    @PostConstruct
+    public void rebuildIdIndex() {
+        idIndex.clearUsers();
+        jdbcTemplate.query("SELECT ID FROM USERS", (ResultSet rs) -> {
+            idIndex.addUser(rs.getInt("ID"));
+        });
+    }
+
+    /**
+     * Загружает граф дружбы из таблицы FRIENDS.
+     */
+    @PostConstruct
+    public void rebuildFriendGraph() {
+        FriendGraph.Edges edges = new FriendGraph.Edges();
+        jdbcTemplate.query("SELECT USER_ID, FRIEND_ID FROM FRIENDS", (ResultSet rs) -> {
+            edges.add(rs.getInt("USER_ID"), rs.getInt("FRIEND_ID"));
+        });
+        friendGraph.load(edges);
+    }
+
     @Override
     public List<User> getAll() {
         String sqlQuery = "SELECT * FROM USERS";
         return jdbcTemplate.query(sqlQuery, this::mapRowToUser);
     }
 
+    @Override
+    public List<User> getPage(int afterId, int limit) {
+        String sqlQuery = "SELECT * FROM USERS WHERE ID > ? ORDER BY ID LIMIT ?";
+        return jdbcTemplate.query(sqlQuery, this::mapRowToUser, afterId, limit);
+    }
+
     @Override
     public User create(User user) {
         String sqlQuery = "INSERT INTO USERS (NAME, LOGIN, EMAIL, BIRTHDAY) VALUES (?,?,?,?);";
@@ -49,6 +104,7 @@ public class DbUserStorage implements UserStorage {
         }, keyHolder);
         int id = Objects.requireNonNull(keyHolder.getKey()).intValue();
         user.setId(id);
+        TransactionUtils.afterCommit(() -> idIndex.addUser(id));
         return user;
     }
 
@@ -67,6 +123,7 @@ public class DbUserStorage implements UserStorage {
 
     @Override
     public User getById(int id) {
+        checkExists(id);
         String sqlQuery = "SELECT * FROM USERS WHERE ID=?";
         SqlRowSet userRows = jdbcTemplate.queryForRowSet(sqlQuery, id);
         if (userRows.next()) {
@@ -77,7 +134,7 @@ public class DbUserStorage implements UserStorage {
                     .email(userRows.getString("EMAIL"))
                     .birthday(Objects.requireNonNull(userRows.getDate("BIRTHDAY")).toLocalDate())
                     .build();
-            user.setFriends(new HashSet<>(getFriendsIdByUserId(id)));
+            user.setFriends(toSet(friendGraph.getFriendIds(id)));
             return user;
         } else {
             throw new NotFoundException("Пользователь с ID: '" + id + "' не найден");
@@ -86,15 +143,10 @@ public class DbUserStorage implements UserStorage {
 
     @Override
     public User addToFriends(int userId, int friendId) {
-        boolean isFriendExists = false;
-        String sqlQuery = "SELECT * FROM FRIENDS WHERE USER_ID=? AND FRIEND_ID=?";
-        SqlRowSet userRows = jdbcTemplate.queryForRowSet(sqlQuery, friendId, userId);
-        if (userRows.next()) {
-            isFriendExists = true;
-        }
-        if (!isFriendExists) {
-            sqlQuery = "INSERT INTO FRIENDS (USER_ID, FRIEND_ID) values (?, ?)";
+        if (!friendGraph.hasFriend(friendId, userId)) {
+            String sqlQuery = "INSERT INTO FRIENDS (USER_ID, FRIEND_ID) values (?, ?)";
             jdbcTemplate.update(sqlQuery, userId, friendId);
+            friendGraph.addFriend(userId, friendId);
         }
         return getById(userId);
     }
@@ -102,83 +154,66 @@ public class DbUserStorage implements UserStorage {
     @Override
     public User removeFromFriends(int userId, int friendId) {
         String sqlQuery = "DELETE FROM FRIENDS WHERE USER_ID=? AND FRIEND_ID=?";
-        jdbcTemplate.update(sqlQuery, userId, friendId);
+        if (jdbcTemplate.update(sqlQuery, userId, friendId) > 0) {
+            friendGraph.removeFriend(userId, friendId);
+        }
         return getById(userId);
     }
 
     @Override
     public List<User> getFriendList(int id) {
-        String sqlQuery = "SELECT FRIEND_ID FROM FRIENDS WHERE USER_ID=?";
-        return jdbcTemplate.query(sqlQuery, (rs, rowNum) -> getFriend(rs), id);
+        return getByIds(friendGraph.getFriendIds(id));
     }
 
     @Override
     public List<User> getCommonFriends(int id, int otherId) {
-        List<User> commonFriends = new ArrayList<>();
-        String sqlQuery = "SELECT FRIEND_ID FROM FRIENDS WHERE USER_ID=? " +
-                "AND FRIEND_ID IN (SELECT FRIEND_ID FROM FRIENDS WHERE USER_ID=?)";
-        SqlRowSet userRows = jdbcTemplate.queryForRowSet(sqlQuery, id, otherId);
-        if (userRows.next()) {
-            commonFriends.add(getById(userRows.getInt("FRIEND_ID")));
+        return getByIds(friendGraph.getCommonFriendIds(id, otherId));
+    }
+
+    @Override
+    public int getFriendCount(int id) {
+        return friendGraph.getFriendCount(id);
+    }
+
+    /**
+     * Загружает пользователей одним запросом, друзей каждого берет из графа.
+     */
+    private List<User> getByIds(int[] ids) {
+        if (ids.length == 0) {
+            return new ArrayList<>();
+        }
+        String sqlQuery = "SELECT * FROM USERS WHERE ID IN (:ids) ORDER BY ID";
+        List<User> users = jdbcOperations.query(sqlQuery, Map.of("ids", toSet(ids)), this::mapRowToUser);
+        users.forEach(user -> user.setFriends(toSet(friendGraph.getFriendIds(user.getId()))));
+        return users;
+    }
+
+    private static Set<Integer> toSet(int[] ids) {
+        Set<Integer> set = new HashSet<>();
+        for (int id : ids) {
+            set.add(id);
         }
-        return commonFriends;
+        return set;
     }
 
     @Override
     public boolean isExists(int id) {
-        String sqlQuery = "SELECT ID FROM USERS WHERE ID=?";
-        SqlRowSet userRows = jdbcTemplate.queryForRowSet(sqlQuery, id);
-        if (userRows.next()) {
-            int idFromUsers = userRows.getInt("ID");
-            return idFromUsers == id;
-        }
-        return false;
+        return idIndex.hasUser(id);
     }
 
     @Override
-    public List<Film> getRecommendedFilmForUser(int targetUserId) {
-        String sql = "SELECT DISTINCT f.id, f.name, f.description, f.duration, f.release_date, " +
-                "f.mpa_id, m.name AS mpa_name, m.description AS mpa_description, " +
-                "g.genre_id, g.name AS genre_name " +
-                "FROM films f " +
-                "INNER JOIN likes l ON f.id = l.film_id " +
-                "INNER JOIN ( " +
-                "  SELECT user_id FROM likes WHERE film_id IN " +
-                "  (SELECT film_id FROM likes WHERE user_id = ?) " +
-                "  AND user_id <> ? " +
-                ") u ON l.user_id = u.user_id " +
-                "LEFT JOIN likes tl ON tl.film_id = f.id AND tl.user_id = ? " +
-                "LEFT JOIN mpas m ON f.mpa_id = m.mpa_id " +
-                "LEFT JOIN film_genres fg ON f.id = fg.film_id " +
-                "LEFT JOIN genres g ON fg.genre_id = g.genre_id " +
-                "WHERE tl.user_id IS NULL";
-
-        Map<Integer, Film> filmMap = new HashMap<>();
-
-        jdbcTemplate.query(sql, (ResultSet rs) -> {
-            try {
-                int filmId = rs.getInt("id");
-
-                if (!filmMap.containsKey(filmId)) {
-                    Film film = dbFilmStorage.makeFilm(rs);
-
-                    filmMap.put(filmId, film);
-                }
-
-                Film film = filmMap.get(filmId);
-
-                int genreId = rs.getInt("genre_id");
-                String genreName = rs.getString("genre_name");
-                if (genreId != 0 && genreName != null) {
-                    Genre genre = new Genre(genreId, genreName);
-                    film.getGenres().add(genre);
-                }
-            } catch (SQLException e) {
-                throw new DatabaseException("Ошибка обработки ResultSet", e);
+    public void checkExists(int... ids) {
+        for (int id : ids) {
+            if (!idIndex.hasUser(id)) {
+                throw new NotFoundException("Пользователь с ID: '" + id + "' не найден");
             }
-        }, targetUserId, targetUserId, targetUserId);
+        }
+    }
 
-        return new ArrayList<>(filmMap.values());
+    @Override
+    public Recommendations getRecommendedFilmForUser(int targetUserId) {
+        RecommendationStore.Entry entry = recommendationStore.get(targetUserId);
+        return new Recommendations(dbFilmStorage.getByIds(entry.getFilmIds(), FilmField.ALL), entry.getComputedAt());
     }
 
     private User mapRowToUser(ResultSet resultSet, int rowNum) {
@@ -195,31 +230,28 @@ public class DbUserStorage implements UserStorage {
         }
     }
 
-    private User getFriend(ResultSet rs) {
-        try {
-            return getById(rs.getInt("FRIEND_ID"));
-        } catch (SQLException e) {
-            throw new DatabaseException("Ошибка получения друга из база");
-        }
-    }
-
-    private List<Integer> getFriendsIdByUserId(int id) {
-        String sqlQuery = "SELECT FRIEND_ID from FRIENDS where USER_ID=?";
-        return (jdbcTemplate.query(sqlQuery, (rs, rowNum) -> getFriendId(rs), id));
-    }
-
-    private Integer getFriendId(ResultSet rs) {
-        try {
-            return rs.getInt("FRIEND_ID");
-        } catch (SQLException e) {
-            throw new DatabaseException("Ошибка получения друга из база");
-        }
-    }
-
+    @Transactional
     public User deleteUserById(int id) {
         User user = getById(id);
+        Map<Integer, Long> likedAt = new HashMap<>();
+        jdbcTemplate.query("SELECT FILM_ID, CREATED_AT FROM LIKES WHERE USER_ID = ?", (ResultSet rs) -> {
+            likedAt.put(rs.getInt("FILM_ID"), rs.getTimestamp("CREATED_AT").getTime());
+        }, user.getId());
+        Set<Integer> likedFilmIds = likedAt.keySet();
+        String likesSql = "UPDATE FILMS SET LIKES_COUNT = LIKES_COUNT - 1 " +
+                "WHERE ID IN (SELECT FILM_ID FROM LIKES WHERE USER_ID = ?)";
+        jdbcTemplate.update(likesSql, user.getId());
         String sql = "DELETE FROM users WHERE id = ?";
         jdbcTemplate.update(sql, user.getId());
+        TransactionUtils.afterCommit(() -> {
+            filmCache.invalidateAll(likedFilmIds);
+            likesIndex.removeUser(user.getId());
+            likedFilmIds.forEach(filmId -> popularityIndex.changeLikes(filmId, -1));
+            likedAt.forEach(trendingIndex::removeLike);
+            idIndex.removeUser(user.getId());
+            friendGraph.removeUser(user.getId());
+            recommendationStore.remove(user.getId());
+        });
         return user;
     }
 }
\ No newline at end of file
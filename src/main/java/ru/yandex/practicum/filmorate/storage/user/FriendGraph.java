@@ -0,0 +1,276 @@
+package ru.yandex.practicum.filmorate.storage.user;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.IntStream;
+
+/**
+ * Граф дружбы в памяти. Основная часть хранится в формате CSR: друзья пользователя u -
+ * отсортированный участок targets[offsets[u]..offsets[u + 1]). Свежие изменения копятся
+ * в наложении (added, removed, deletedUsers), а когда их становится много, вливаются в массивы целиком.
+ * Ребро (u, f) соответствует строке (USER_ID, FRIEND_ID) таблицы FRIENDS.
+ * Удаленный пользователь остается в deletedUsers до слияния: его ребра и ребра к нему
+ * отбрасываются при чтении. Id удаленных пользователей повторно не выдаются.
+ */
+@Component
+public class FriendGraph {
+
+    private static final int MIN_COMPACT_THRESHOLD = 1024;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Integer, Set<Integer>> added = new HashMap<>();
+    private final Map<Integer, Set<Integer>> removed = new HashMap<>();
+    private final Set<Integer> deletedUsers = new HashSet<>();
+    private int[] offsets = new int[1];
+    private int[] targets = new int[0];
+    private int overlaySize;
+
+    /**
+     * Заменяет граф ребрами из edges.
+     */
+    public void load(Edges edges) {
+        lock.writeLock().lock();
+        try {
+            build(edges);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void addFriend(int userId, int friendId) {
+        lock.writeLock().lock();
+        try {
+            Set<Integer> minus = removed.get(userId);
+            if (minus != null && minus.remove(friendId)) {
+                if (minus.isEmpty()) {
+                    removed.remove(userId);
+                }
+                overlaySize--;
+            } else if (!inBase(userId, friendId) && added.computeIfAbsent(userId, id -> new HashSet<>()).add(friendId)) {
+                overlaySize++;
+                compactIfNeeded();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeFriend(int userId, int friendId) {
+        lock.writeLock().lock();
+        try {
+            Set<Integer> plus = added.get(userId);
+            if (plus != null && plus.remove(friendId)) {
+                if (plus.isEmpty()) {
+                    added.remove(userId);
+                }
+                overlaySize--;
+            } else if (inBase(userId, friendId) && removed.computeIfAbsent(userId, id -> new HashSet<>()).add(friendId)) {
+                overlaySize++;
+                compactIfNeeded();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Убирает пользователя вместе со всеми ребрами к нему и от него. Граф не перестраивается:
+     * пользователь помечается удаленным, а ребра выбрасываются при следующем слиянии.
+     */
+    public void removeUser(int userId) {
+        lock.writeLock().lock();
+        try {
+            if (!deletedUsers.add(userId)) {
+                return;
+            }
+            Set<Integer> plus = added.remove(userId);
+            Set<Integer> minus = removed.remove(userId);
+            overlaySize += 1 + rowEnd(userId) - rowStart(userId)
+                    - (plus == null ? 0 : plus.size())
+                    - (minus == null ? 0 : minus.size());
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean hasFriend(int userId, int friendId) {
+        lock.readLock().lock();
+        try {
+            if (deletedUsers.contains(userId) || deletedUsers.contains(friendId)) {
+                return false;
+            }
+            Set<Integer> plus = added.get(userId);
+            Set<Integer> minus = removed.get(userId);
+            return plus != null && plus.contains(friendId)
+                    || inBase(userId, friendId) && (minus == null || !minus.contains(friendId));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Возвращает id друзей пользователя по возрастанию.
+     */
+    public int[] getFriendIds(int userId) {
+        lock.readLock().lock();
+        try {
+            return friendsOf(userId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int getFriendCount(int userId) {
+        lock.readLock().lock();
+        try {
+            if (!deletedUsers.isEmpty()) {
+                return friendsOf(userId).length;
+            }
+            Set<Integer> plus = added.get(userId);
+            Set<Integer> minus = removed.get(userId);
+            return rowEnd(userId) - rowStart(userId)
+                    + (plus == null ? 0 : plus.size())
+                    - (minus == null ? 0 : minus.size());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Возвращает по возрастанию id тех, кто есть в друзьях у обоих пользователей.
+     * Пересекает два отсортированных списка за один проход.
+     */
+    public int[] getCommonFriendIds(int userId, int otherUserId) {
+        lock.readLock().lock();
+        try {
+            int[] friends = friendsOf(userId);
+            int[] otherFriends = friendsOf(otherUserId);
+            int[] common = new int[Math.min(friends.length, otherFriends.length)];
+            int size = 0;
+            for (int i = 0, j = 0; i < friends.length && j < otherFriends.length; ) {
+                if (friends[i] < otherFriends[j]) {
+                    i++;
+                } else if (friends[i] > otherFriends[j]) {
+                    j++;
+                } else {
+                    common[size++] = friends[i];
+                    i++;
+                    j++;
+                }
+            }
+            return Arrays.copyOf(common, size);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int rowStart(int userId) {
+        return userId >= 0 && userId < offsets.length - 1 ? offsets[userId] : 0;
+    }
+
+    private int rowEnd(int userId) {
+        return userId >= 0 && userId < offsets.length - 1 ? offsets[userId + 1] : 0;
+    }
+
+    private boolean inBase(int userId, int friendId) {
+        int start = rowStart(userId);
+        int end = rowEnd(userId);
+        return start < end && Arrays.binarySearch(targets, start, end, friendId) >= 0;
+    }
+
+    private int[] friendsOf(int userId) {
+        if (deletedUsers.contains(userId)) {
+            return new int[0];
+        }
+        int[] base = Arrays.copyOfRange(targets, rowStart(userId), rowEnd(userId));
+        Set<Integer> plus = added.get(userId);
+        Set<Integer> minus = removed.get(userId);
+        if (plus == null && minus == null && deletedUsers.isEmpty()) {
+            return base;
+        }
+        return IntStream.concat(
+                        Arrays.stream(base).filter(friendId -> minus == null || !minus.contains(friendId)),
+                        plus == null ? IntStream.empty() : plus.stream().mapToInt(Integer::intValue))
+                .filter(friendId -> !deletedUsers.contains(friendId))
+                .sorted()
+                .toArray();
+    }
+
+    private void compactIfNeeded() {
+        if (overlaySize > Math.max(MIN_COMPACT_THRESHOLD, targets.length / 8)) {
+            compact();
+        }
+    }
+
+    /**
+     * Вливает наложение в массивы, попутно выбрасывая ребра удаленных пользователей.
+     */
+    private void compact() {
+        int maxUserId = Math.max(offsets.length - 2, added.keySet().stream()
+                .mapToInt(Integer::intValue)
+                .max()
+                .orElse(0));
+        Edges edges = new Edges();
+        for (int userId = 0; userId <= maxUserId; userId++) {
+            for (int friendId : friendsOf(userId)) {
+                edges.add(userId, friendId);
+            }
+        }
+        build(edges);
+    }
+
+    private void build(Edges edges) {
+        int maxUserId = 0;
+        for (int i = 0; i < edges.size; i++) {
+            maxUserId = Math.max(maxUserId, edges.userIds[i]);
+        }
+        int[] newOffsets = new int[maxUserId + 2];
+        for (int i = 0; i < edges.size; i++) {
+            newOffsets[edges.userIds[i] + 1]++;
+        }
+        for (int userId = 1; userId < newOffsets.length; userId++) {
+            newOffsets[userId] += newOffsets[userId - 1];
+        }
+        int[] newTargets = new int[edges.size];
+        int[] next = Arrays.copyOf(newOffsets, newOffsets.length - 1);
+        for (int i = 0; i < edges.size; i++) {
+            newTargets[next[edges.userIds[i]]++] = edges.friendIds[i];
+        }
+        for (int userId = 0; userId < newOffsets.length - 1; userId++) {
+            Arrays.sort(newTargets, newOffsets[userId], newOffsets[userId + 1]);
+        }
+        offsets = newOffsets;
+        targets = newTargets;
+        added.clear();
+        removed.clear();
+        deletedUsers.clear();
+        overlaySize = 0;
+    }
+
+    /**
+     * Растущий список ребер для загрузки графа.
+     */
+    public static class Edges {
+        private int[] userIds = new int[16];
+        private int[] friendIds = new int[16];
+        private int size;
+
+        public void add(int userId, int friendId) {
+            if (size == userIds.length) {
+                userIds = Arrays.copyOf(userIds, size * 2);
+                friendIds = Arrays.copyOf(friendIds, size * 2);
+            }
+            userIds[size] = userId;
+            friendIds[size] = friendId;
+            size++;
+        }
+    }
+}
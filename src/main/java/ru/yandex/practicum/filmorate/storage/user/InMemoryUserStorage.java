@@ -3,9 +3,10 @@ package ru.yandex.practicum.filmorate.storage.user;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
-import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Recommendations;
 import ru.yandex.practicum.filmorate.model.User;
 
+import java.time.Instant;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -22,6 +23,15 @@ public class InMemoryUserStorage implements UserStorage {
         return new ArrayList<>(users.values());
     }
 
+    @Override
+    public List<User> getPage(int afterId, int limit) {
+        return users.values().stream()
+                .filter(user -> user.getId() > afterId)
+                .sorted(Comparator.comparingInt(User::getId))
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
     @Override
     public User create(User user) {
         int id = ++globalId;
@@ -45,7 +55,11 @@ public class InMemoryUserStorage implements UserStorage {
     @Override
     public User getById(int id) {
         log.info("Запрошен пользователь с ID: '{}'", id);
-        return users.get(id);
+        User user = users.get(id);
+        if (user == null) {
+            throw new NotFoundException("Пользователь с ID: '" + id + "' не найден");
+        }
+        return user;
     }
 
     @Override
@@ -76,6 +90,11 @@ public class InMemoryUserStorage implements UserStorage {
                 .collect(Collectors.toList());
     }
 
+    @Override
+    public int getFriendCount(int id) {
+        return users.get(id).getFriends().size();
+    }
+
     @Override
     public List<User> getCommonFriends(int id, int otherId) {
         final User userOne = users.get(id);
@@ -104,8 +123,8 @@ public class InMemoryUserStorage implements UserStorage {
     }
 
     @Override
-    public List<Film> getRecommendedFilmForUser(int targetUserId) {
-        return null;
+    public Recommendations getRecommendedFilmForUser(int targetUserId) {
+        return new Recommendations(Collections.emptyList(), Instant.now());
     }
 
     @Override
@@ -113,6 +132,15 @@ public class InMemoryUserStorage implements UserStorage {
         return users.containsKey(id);
     }
 
+    @Override
+    public void checkExists(int... ids) {
+        for (int id : ids) {
+            if (!users.containsKey(id)) {
+                throw new NotFoundException("Пользователь с ID: '" + id + "' не найден");
+            }
+        }
+    }
+
     @Override
     public User deleteUserById(int id) {
         return getById(id);
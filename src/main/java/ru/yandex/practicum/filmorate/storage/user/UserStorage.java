@@ -1,6 +1,6 @@
 package ru.yandex.practicum.filmorate.storage.user;
 
-import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Recommendations;
 import ru.yandex.practicum.filmorate.model.User;
 
 import java.util.List;
@@ -8,10 +8,15 @@ import java.util.List;
 public interface UserStorage {
     List<User> getAll();
 
+    List<User> getPage(int afterId, int limit);
+
     User create(User user);
 
     User update(User user);
 
+    /**
+     * Возвращает пользователя или бросает NotFoundException, если его нет.
+     */
     User getById(int id);
 
     User addToFriends(int userId, int friendId);
@@ -22,9 +27,16 @@ public interface UserStorage {
 
     List<User> getCommonFriends(int id, int otherId);
 
-    List<Film> getRecommendedFilmForUser(int targetUserId);
+    int getFriendCount(int id);
+
+    Recommendations getRecommendedFilmForUser(int targetUserId);
 
     boolean isExists(int id);
 
+    /**
+     * Проверяет сразу несколько пользователей и бросает NotFoundException на первом отсутствующем.
+     */
+    void checkExists(int... ids);
+
     User deleteUserById(int id);
 }
\ No newline at end of file
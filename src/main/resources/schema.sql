@@ -22,10 +22,13 @@ CREATE TABLE IF NOT EXISTS FILMS
     duration     INTEGER,
     release_date DATE         NOT NULL,
     mpa_id       INTEGER      NOT NULL,
+    likes_count  INTEGER      NOT NULL DEFAULT 0,
     FOREIGN KEY (mpa_id) REFERENCES MPAS (mpa_id),
     CHECK (duration > 0)
 );
 
+CREATE INDEX IF NOT EXISTS FILMS_RELEASE_DATE_IDX ON FILMS (release_date, id);
+
 CREATE TABLE IF NOT EXISTS GENRES
 (
     genre_id INTEGER PRIMARY KEY,
@@ -41,15 +44,52 @@ CREATE TABLE IF NOT EXISTS FILM_GENRES
     FOREIGN KEY (genre_id) REFERENCES GENRES (genre_id) ON DELETE CASCADE
 );
 
+CREATE INDEX IF NOT EXISTS FILM_GENRES_GENRE_IDX ON FILM_GENRES (genre_id, film_id);
+
 CREATE TABLE IF NOT EXISTS LIKES
 (
     user_id INTEGER NOT NULL,
     film_id INTEGER NOT NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
     PRIMARY KEY (film_id, user_id),
     FOREIGN KEY (film_id) REFERENCES FILMS (id) ON DELETE CASCADE,
     FOREIGN KEY (user_id) REFERENCES USERS (id) ON DELETE CASCADE
 );
 
+CREATE INDEX IF NOT EXISTS LIKES_USER_IDX ON LIKES (user_id, film_id);
+
+-- время старых лайков неизвестно: они считаются поставленными давно и не попадают в тренды
+ALTER TABLE LIKES
+    ADD COLUMN IF NOT EXISTS created_at TIMESTAMP NOT NULL DEFAULT TIMESTAMP '1970-01-01 00:00:00';
+
+ALTER TABLE LIKES
+    ALTER COLUMN created_at SET DEFAULT CURRENT_TIMESTAMP;
+
+-- разовые шаги обновления схемы, которые нельзя повторять при каждом запуске
+CREATE TABLE IF NOT EXISTS SCHEMA_MIGRATIONS
+(
+    name       VARCHAR PRIMARY KEY,
+    applied_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+-- базы, созданные до появления счетчика лайков, получают колонку и значения из LIKES;
+-- счетчики пересчитываются один раз, дальше их ведет приложение. Отметка о пересчете
+-- превращается в границу по первичному ключу: после пересчета диапазон id пуст,
+-- и при следующих запусках FILMS и LIKES не читаются
+ALTER TABLE FILMS
+    ADD COLUMN IF NOT EXISTS likes_count INTEGER NOT NULL DEFAULT 0;
+
+UPDATE FILMS F
+SET likes_count = (SELECT COUNT(*) FROM LIKES L WHERE L.film_id = F.id)
+WHERE F.id <= (SELECT CASE
+                          WHEN EXISTS (SELECT 1 FROM SCHEMA_MIGRATIONS WHERE name = 'likes_count_backfill') THEN 0
+                          ELSE 2147483647 END)
+  AND likes_count <> (SELECT COUNT(*) FROM LIKES L WHERE L.film_id = F.id);
+
+MERGE INTO SCHEMA_MIGRATIONS (name) KEY (name) VALUES ('likes_count_backfill');
+
+CREATE INDEX IF NOT EXISTS FILMS_LIKES_COUNT_IDX ON FILMS (likes_count DESC, id);
+
 CREATE TABLE IF NOT EXISTS FRIENDS
 (
     user_id   INTEGER NOT NULL,
@@ -71,10 +111,21 @@ CREATE TABLE IF NOT EXISTS FILMS_AND_DIRECTORS
 (
     FILM_ID     INTEGER not null,
     DIRECTOR_ID INTEGER not null,
+    CONSTRAINT FILMS_AND_DIRECTORS_PK PRIMARY KEY (FILM_ID, DIRECTOR_ID),
     FOREIGN KEY (FILM_ID) REFERENCES FILMS (ID) ON DELETE CASCADE,
     FOREIGN KEY (DIRECTOR_ID) REFERENCES DIRECTORS (DIRECTOR_ID) ON DELETE CASCADE
 );
 
+-- в базах, созданных без первичного ключа, могли накопиться повторяющиеся связи
+DELETE
+FROM FILMS_AND_DIRECTORS
+WHERE _ROWID_ NOT IN (SELECT MIN(_ROWID_) FROM FILMS_AND_DIRECTORS GROUP BY FILM_ID, DIRECTOR_ID);
+
+ALTER TABLE FILMS_AND_DIRECTORS
+    ADD CONSTRAINT IF NOT EXISTS FILMS_AND_DIRECTORS_PK PRIMARY KEY (FILM_ID, DIRECTOR_ID);
+
+CREATE INDEX IF NOT EXISTS FILMS_AND_DIRECTORS_DIRECTOR_IDX ON FILMS_AND_DIRECTORS (DIRECTOR_ID, FILM_ID);
+
 CREATE TABLE IF NOT EXISTS REVIEWS
 (
     review_id   INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
@@ -87,6 +138,9 @@ CREATE TABLE IF NOT EXISTS REVIEWS
     FOREIGN KEY (film_id) REFERENCES FILMS (id) ON DELETE CASCADE
 );
 
+CREATE INDEX IF NOT EXISTS REVIEWS_FILM_USEFUL_IDX ON REVIEWS (film_id, useful DESC, review_id);
+CREATE INDEX IF NOT EXISTS REVIEWS_USEFUL_IDX ON REVIEWS (useful DESC, review_id);
+
 CREATE TABLE IF NOT EXISTS REVIEWS_LIKES
 (
     user_id   INTEGER NOT NULL,
@@ -106,4 +160,6 @@ CREATE TABLE IF NOT EXISTS FEEDS
     eventType VARCHAR(15) NOT NULL,
     operation VARCHAR(15) NOT NULL,
     FOREIGN KEY (userId) REFERENCES USERS (id) ON DELETE CASCADE
-);
\ No newline at end of file
+);
+
+CREATE INDEX IF NOT EXISTS FEEDS_USER_IDX ON FEEDS (userId, id);
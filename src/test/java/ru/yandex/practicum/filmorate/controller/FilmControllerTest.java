@@ -1,16 +1,19 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.junit.jupiter.api.BeforeEach;
-import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.LikeStatus;
 import ru.yandex.practicum.filmorate.model.Mpa;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.service.DirectorService;
 import ru.yandex.practicum.filmorate.service.EventService;
 import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.LikeWriteBuffer;
 import ru.yandex.practicum.filmorate.service.UserService;
 import ru.yandex.practicum.filmorate.storage.DirectorStorageForTests;
 import ru.yandex.practicum.filmorate.storage.EventStorageForTests;
@@ -25,12 +28,12 @@ import javax.validation.Validator;
 import javax.validation.ValidatorFactory;
 import java.time.LocalDate;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 @DisplayName("Тестирование FilmController")
-@Disabled
 class FilmControllerTest {
 
     private static final String FILM_NAME = "nisi eiusmod";
@@ -102,7 +105,8 @@ class FilmControllerTest {
         FilmStorage filmStorage = new InMemoryFilmStorage();
         UserStorage userStorage = new InMemoryUserStorage();
         FilmService service = new FilmService(filmStorage, userStorage,
-                new EventService(new EventStorageForTests(), null), new DirectorService(new DirectorStorageForTests()));
+                new EventService(new EventStorageForTests(), null), new DirectorService(new DirectorStorageForTests()),
+                new ObjectMapper().findAndRegisterModules(), new LikeWriteBuffer(filmStorage, new EventStorageForTests(), false, 0, 0));
         FilmController fc = new FilmController(service);
         ValidationException ex = assertThrows(ValidationException.class,
                 () -> fc.create(film));
@@ -121,7 +125,8 @@ class FilmControllerTest {
         FilmStorage filmStorage = new InMemoryFilmStorage();
         UserStorage userStorage = new InMemoryUserStorage();
         FilmService service = new FilmService(filmStorage, userStorage,
-                new EventService(new EventStorageForTests(), null), new DirectorService(new DirectorStorageForTests()));
+                new EventService(new EventStorageForTests(), null), new DirectorService(new DirectorStorageForTests()),
+                new ObjectMapper().findAndRegisterModules(), new LikeWriteBuffer(filmStorage, new EventStorageForTests(), false, 0, 0));
         FilmController fc = new FilmController(service);
         ValidationException ex = assertThrows(ValidationException.class,
                 () -> fc.create(film));
@@ -151,7 +156,8 @@ class FilmControllerTest {
         FilmStorage filmStorage = new InMemoryFilmStorage();
         UserStorage userStorage = new InMemoryUserStorage();
         FilmService service = new FilmService(filmStorage, userStorage,
-                new EventService(new EventStorageForTests(), null), new DirectorService(new DirectorStorageForTests()));
+                new EventService(new EventStorageForTests(), null), new DirectorService(new DirectorStorageForTests()),
+                new ObjectMapper().findAndRegisterModules(), new LikeWriteBuffer(filmStorage, new EventStorageForTests(), false, 0, 0));
         FilmController fc = new FilmController(service);
     }
 
@@ -168,7 +174,8 @@ class FilmControllerTest {
         FilmStorage filmStorage = new InMemoryFilmStorage();
         UserStorage userStorage = new InMemoryUserStorage();
         FilmService filmService = new FilmService(filmStorage, userStorage,
-                new EventService(new EventStorageForTests(), null), new DirectorService(new DirectorStorageForTests()));
+                new EventService(new EventStorageForTests(), null), new DirectorService(new DirectorStorageForTests()),
+                new ObjectMapper().findAndRegisterModules(), new LikeWriteBuffer(filmStorage, new EventStorageForTests(), false, 0, 0));
         UserService userService = new UserService(userStorage, new EventService(new EventStorageForTests(), null));
         FilmController fc = new FilmController(filmService);
         UserController uc = new UserController(userService, new EventService(new EventStorageForTests(), null));
@@ -191,7 +198,8 @@ class FilmControllerTest {
         FilmStorage filmStorage = new InMemoryFilmStorage();
         UserStorage userStorage = new InMemoryUserStorage();
         FilmService filmService = new FilmService(filmStorage, userStorage,
-                new EventService(new EventStorageForTests(), null), new DirectorService(new DirectorStorageForTests()));
+                new EventService(new EventStorageForTests(), null), new DirectorService(new DirectorStorageForTests()),
+                new ObjectMapper().findAndRegisterModules(), new LikeWriteBuffer(filmStorage, new EventStorageForTests(), false, 0, 0));
         UserService userService = new UserService(userStorage, new EventService(new EventStorageForTests(), null));
         FilmController fc = new FilmController(filmService);
         UserController uc = new UserController(userService, new EventService(new EventStorageForTests(), null));
@@ -202,6 +210,53 @@ class FilmControllerTest {
         assertEquals(0, film.getLikes().size());
     }
 
+    @DisplayName("Краткий ответ на лайк и его снятие")
+    @Test
+    void likeBrief() {
+        final Film film = Film.builder()
+                .name(FILM_NAME).description(FILM_DESC).duration(FILM_DURATION).releaseDate(FILM_RELEASE)
+                .mpa(new Mpa(1, null, null))
+                .build();
+        final User user = User.builder()
+                .name(USER_NAME).email(USER_EMAIL).login(USER_LOGIN).birthday(USER_BIRTHDAY)
+                .build();
+        FilmStorage filmStorage = new InMemoryFilmStorage();
+        UserStorage userStorage = new InMemoryUserStorage();
+        FilmService filmService = new FilmService(filmStorage, userStorage,
+                new EventService(new EventStorageForTests(), null), new DirectorService(new DirectorStorageForTests()),
+                new ObjectMapper().findAndRegisterModules(), new LikeWriteBuffer(filmStorage, new EventStorageForTests(), false, 0, 0));
+        UserService userService = new UserService(userStorage, new EventService(new EventStorageForTests(), null));
+        FilmController fc = new FilmController(filmService);
+        UserController uc = new UserController(userService, new EventService(new EventStorageForTests(), null));
+        fc.create(film);
+        uc.create(user);
+        assertEquals(new LikeStatus(film.getId(), 1, true), fc.setLikeBrief(film.getId(), user.getId()));
+        assertEquals(new LikeStatus(film.getId(), 1, true), fc.setLikeBrief(film.getId(), user.getId()));
+        assertEquals(new LikeStatus(film.getId(), 0, false), fc.removeLikeBrief(film.getId(), user.getId()));
+    }
+
+    @DisplayName("В ответе только запрошенные поля фильма")
+    @Test
+    void getByIdWithFields() {
+        final Film film = Film.builder()
+                .name(FILM_NAME).description(FILM_DESC).duration(FILM_DURATION).releaseDate(FILM_RELEASE)
+                .mpa(new Mpa(1, null, null))
+                .build();
+        FilmStorage filmStorage = new InMemoryFilmStorage();
+        UserStorage userStorage = new InMemoryUserStorage();
+        FilmService filmService = new FilmService(filmStorage, userStorage,
+                new EventService(new EventStorageForTests(), null), new DirectorService(new DirectorStorageForTests()),
+                new ObjectMapper().findAndRegisterModules(),
+                new LikeWriteBuffer(filmStorage, new EventStorageForTests(), false, 0, 0));
+        FilmController fc = new FilmController(filmService);
+        fc.create(film);
+        ObjectNode node = fc.getById(film.getId(), List.of("name", "releaseDate"));
+        Set<String> names = new HashSet<>();
+        node.fieldNames().forEachRemaining(names::add);
+        assertEquals(Set.of("id", "name", "releaseDate"), names);
+        assertThrows(ValidationException.class, () -> fc.getById(film.getId(), List.of("likes")));
+    }
+
     @DisplayName("Получен список популярных фильмов")
     @Test
     void getPopular() {
@@ -219,7 +274,8 @@ class FilmControllerTest {
         FilmStorage filmStorage = new InMemoryFilmStorage();
         UserStorage userStorage = new InMemoryUserStorage();
         FilmService filmService = new FilmService(filmStorage, userStorage,
-                new EventService(new EventStorageForTests(), null), new DirectorService(new DirectorStorageForTests()));
+                new EventService(new EventStorageForTests(), null), new DirectorService(new DirectorStorageForTests()),
+                new ObjectMapper().findAndRegisterModules(), new LikeWriteBuffer(filmStorage, new EventStorageForTests(), false, 0, 0));
         UserService userService = new UserService(userStorage, new EventService(new EventStorageForTests(), null));
         FilmController fc = new FilmController(filmService);
         UserController uc = new UserController(userService, new EventService(new EventStorageForTests(), null));
@@ -228,6 +284,44 @@ class FilmControllerTest {
         uc.create(user);
         fc.setLike(filmOne.getId(), user.getId());
         fc.setLike(filmTwo.getId(), user.getId());
-        assertEquals(2, fc.getPopularFilms(10, 1, 1967).size());
+        assertEquals(2, fc.getPopularFilms(10, 1, 1967, null).size());
+    }
+
+    @DisplayName("Размер страницы ограничен сверху")
+    @Test
+    void pageLimit() {
+        final Film film = Film.builder()
+                .name(FILM_NAME).description(FILM_DESC).duration(FILM_DURATION).releaseDate(FILM_RELEASE)
+                .mpa(new Mpa(1, null, null))
+                .build();
+        FilmStorage filmStorage = new InMemoryFilmStorage();
+        UserStorage userStorage = new InMemoryUserStorage();
+        FilmService filmService = new FilmService(filmStorage, userStorage,
+                new EventService(new EventStorageForTests(), null), new DirectorService(new DirectorStorageForTests()),
+                new ObjectMapper().findAndRegisterModules(), new LikeWriteBuffer(filmStorage, new EventStorageForTests(), false, 0, 0));
+        FilmController fc = new FilmController(filmService);
+        fc.create(film);
+        assertEquals(1, fc.getAll(1000, 0, null).getBody().size());
+        ValidationException ex = assertThrows(ValidationException.class, () -> fc.getAll(1001, 0, null));
+        assertEquals("Размер страницы не может быть больше 1000", ex.getMessage());
+    }
+
+    @DisplayName("Окно трендов - одно из поддерживаемых")
+    @Test
+    void trendingWindow() {
+        FilmStorage filmStorage = new InMemoryFilmStorage();
+        FilmService filmService = new FilmService(filmStorage, new InMemoryUserStorage(),
+                new EventService(new EventStorageForTests(), null), new DirectorService(new DirectorStorageForTests()),
+                new ObjectMapper().findAndRegisterModules(), new LikeWriteBuffer(filmStorage, new EventStorageForTests(), false, 0, 0));
+        FilmController fc = new FilmController(filmService);
+        for (String window : List.of("1d", "7d", "30d", "24h", "168h", "720h")) {
+            assertTrue(fc.getTrendingFilms(window, 10, null, null).isEmpty());
+        }
+        for (String window : List.of("5h", "2d", "99999d", "week")) {
+            ValidationException ex = assertThrows(ValidationException.class,
+                    () -> fc.getTrendingFilms(window, 10, null, null));
+            assertEquals("Окно трендов должно быть одним из: 1d, 7d, 30d, 24h, 168h, 720h, получено: " + window,
+                    ex.getMessage());
+        }
     }
-}
\ No newline at end of file
+}
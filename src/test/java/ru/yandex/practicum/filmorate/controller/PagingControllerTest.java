@@ -0,0 +1,116 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.jdbc.Sql;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@Sql(scripts = "file:src/main/resources/data.sql", executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+@DisplayName("Постраничное чтение фильмов и пользователей")
+class PagingControllerTest {
+
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    private final FilmController filmController;
+    private final UserController userController;
+
+    @Test
+    @DisplayName("Страницы фильмов проходят весь каталог по заголовку X-Next-Cursor")
+    void filmPagesTest() {
+        for (int i = 1; i <= 5; i++) {
+            filmController.create(makeFilm("film" + i));
+        }
+
+        List<String> names = new ArrayList<>();
+        List<String> cursors = new ArrayList<>();
+        String cursor = "0";
+        while (cursor != null) {
+            ResponseEntity<List<ObjectNode>> page = filmController.getAll(2, Integer.parseInt(cursor),
+                    List.of("name"));
+            page.getBody().forEach(node -> names.add(node.get("name").asText()));
+            cursor = page.getHeaders().getFirst(NEXT_CURSOR_HEADER);
+            cursors.add(cursor);
+        }
+
+        assertEquals(List.of("film1", "film2", "film3", "film4", "film5"), names);
+        assertEquals(List.of("2", "4"), cursors.subList(0, 2));
+        assertNull(cursors.get(2));
+        assertNull(filmController.getAll(null, 0, null).getHeaders().getFirst(NEXT_CURSOR_HEADER));
+    }
+
+    @Test
+    @DisplayName("Полная последняя страница фильмов дает курсор на пустую страницу")
+    void filmLastFullPageTest() {
+        for (int i = 1; i <= 4; i++) {
+            filmController.create(makeFilm("film" + i));
+        }
+
+        ResponseEntity<List<ObjectNode>> page = filmController.getAll(2, 2, null);
+
+        assertEquals("4", page.getHeaders().getFirst(NEXT_CURSOR_HEADER));
+        assertTrue(filmController.getAll(2, 4, null).getBody().isEmpty());
+    }
+
+    @Test
+    @DisplayName("Страницы пользователей проходят всех пользователей по заголовку X-Next-Cursor")
+    void userPagesTest() {
+        for (int i = 1; i <= 3; i++) {
+            userController.create(makeUser("user" + i));
+        }
+
+        ResponseEntity<List<User>> first = userController.getAll(2, 0);
+        assertEquals(List.of("user1", "user2"), logins(first.getBody()));
+        assertEquals("2", first.getHeaders().getFirst(NEXT_CURSOR_HEADER));
+
+        ResponseEntity<List<User>> second = userController.getAll(2, 2);
+        assertEquals(List.of("user3"), logins(second.getBody()));
+        assertNull(second.getHeaders().getFirst(NEXT_CURSOR_HEADER));
+    }
+
+    private static List<String> logins(List<User> users) {
+        return users.stream()
+                .map(User::getLogin)
+                .collect(Collectors.toList());
+    }
+
+    private static Film makeFilm(String name) {
+        return Film.builder()
+                .name(name)
+                .description("description")
+                .duration(100)
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .mpa(new Mpa(1, null, null))
+                .directors(new HashSet<>())
+                .build();
+    }
+
+    private static User makeUser(String login) {
+        return User.builder()
+                .name(login)
+                .email(login + "@mail.ru")
+                .login(login)
+                .birthday(LocalDate.of(1990, 1, 1))
+                .build();
+    }
+}
@@ -1,7 +1,6 @@
 package ru.yandex.practicum.filmorate.controller;
 
 import org.junit.jupiter.api.BeforeEach;
-import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
@@ -22,7 +21,6 @@ import java.util.Set;
 import static org.junit.jupiter.api.Assertions.*;
 
 @DisplayName("Тестирование UserController")
-@Disabled
 class UserControllerTest {
 
     private static final String USER_NAME = "Nick Name";
@@ -234,4 +232,19 @@ class UserControllerTest {
         uc.addToFriends(userTwo.getId(), commonFriend.getId());
         assertEquals(1, uc.getCommonFriends(userOne.getId(), userTwo.getId()).size());
     }
-}
\ No newline at end of file
+
+    @DisplayName("Размер страницы ограничен сверху")
+    @Test
+    void pageLimit() {
+        final User user = User.builder()
+                .name(USER_NAME).email(USER_EMAIL).login(USER_LOGIN).birthday(USER_BIRTHDAY)
+                .build();
+        UserStorage storage = new InMemoryUserStorage();
+        UserService service = new UserService(storage, new EventService(new EventStorageForTests(), null));
+        UserController uc = new UserController(service, new EventService(new EventStorageForTests(), null));
+        uc.create(user);
+        assertEquals(1, uc.getAll(1000, 0).getBody().size());
+        ValidationException ex = assertThrows(ValidationException.class, () -> uc.getAll(1001, 0));
+        assertEquals("Размер страницы не может быть больше 1000", ex.getMessage());
+    }
+}
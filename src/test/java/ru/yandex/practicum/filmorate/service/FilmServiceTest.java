@@ -0,0 +1,82 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.jdbc.Sql;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@Sql(scripts = "file:src/main/resources/data.sql", executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+@DisplayName("Тесты FilmService")
+class FilmServiceTest {
+
+    private final FilmService filmService;
+    private final FilmStorage filmStorage;
+    private final JdbcOperations jdbcTemplate;
+
+    @Test
+    @DisplayName("Пакетное создание возвращает id в порядке запроса и сохраняет жанры")
+    void createBatchTest() {
+        List<Film> films = IntStream.rangeClosed(1, 1500)
+                .mapToObj(i -> makeFilm("film" + i, i % 6 + 1, 1))
+                .collect(Collectors.toList());
+
+        List<Integer> ids = filmService.createBatch(films);
+
+        assertEquals(1500, ids.size());
+        for (int i : List.of(0, 999, 1000, 1499)) {
+            Film film = filmStorage.getById(ids.get(i));
+            assertEquals("film" + (i + 1), film.getName());
+            assertEquals(List.of((i + 1) % 6 + 1), film.getGenres().stream()
+                    .map(Genre::getId)
+                    .collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    @DisplayName("Ошибка в последней пачке откатывает все пачки")
+    void createBatchRollbackTest() {
+        List<Film> films = new ArrayList<>();
+        IntStream.rangeClosed(1, 1000).forEach(i -> films.add(makeFilm("film" + i, 1, 1)));
+        films.add(makeFilm("broken", 1, 99));
+
+        assertThrows(DataIntegrityViolationException.class, () -> filmService.createBatch(films));
+
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM FILMS;", Integer.class));
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM FILM_GENRES;", Integer.class));
+        assertFalse(filmStorage.isExists(films.get(0).getId()));
+    }
+
+    private static Film makeFilm(String name, int genreId, int mpaId) {
+        Film film = Film.builder()
+                .name(name)
+                .description("description")
+                .duration(100)
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .mpa(new Mpa(mpaId, null, null))
+                .build();
+        film.getGenres().add(new Genre(genreId, null));
+        return film;
+    }
+}
@@ -0,0 +1,112 @@
+package ru.yandex.practicum.filmorate.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.Event;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.storage.EventStorageForTests;
+import ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Тесты LikeWriteBuffer")
+class LikeWriteBufferTest {
+
+    private final List<Event> savedEvents = new ArrayList<>();
+    private InMemoryFilmStorage filmStorage;
+    private LikeWriteBuffer buffer;
+    private Film film;
+
+    @BeforeEach
+    void init() {
+        filmStorage = new InMemoryFilmStorage();
+        film = filmStorage.create(Film.builder()
+                .name("name").description("desc").duration(100)
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .mpa(new Mpa(1, null, null))
+                .build());
+        buffer = new LikeWriteBuffer(filmStorage, new EventStorageForTests() {
+            @Override
+            public void addEvents(List<Event> events) {
+                savedEvents.addAll(events);
+            }
+        }, true, 100, 60_000);
+        buffer.start();
+    }
+
+    @AfterEach
+    void shutdown() throws InterruptedException {
+        buffer.stop();
+    }
+
+    @Test
+    @DisplayName("Лайк и его отмена до сброса гасят друг друга, события сохраняются")
+    void addAndRemoveCancelTest() {
+        buffer.addLike(film.getId(), 1);
+        buffer.removeLike(film.getId(), 1);
+        buffer.addLike(film.getId(), 2);
+        buffer.flush();
+
+        assertEquals(Set.of(2), filmStorage.getById(film.getId()).getLikes());
+        assertEquals(3, savedEvents.size());
+        assertEquals("REMOVE", savedEvents.get(1).getOperation());
+    }
+
+    @Test
+    @DisplayName("Число лайков учитывает буфер, но не считает операции дважды")
+    void likeCountTest() {
+        filmStorage.addLike(film.getId(), 1);
+        buffer.addLike(film.getId(), 1);
+        assertEquals(1, buffer.getLikeCount(film.getId()));
+
+        buffer.addLike(film.getId(), 2);
+        buffer.addLike(film.getId(), 3);
+        buffer.removeLike(film.getId(), 1);
+        buffer.removeLike(film.getId(), 4);
+        assertEquals(2, buffer.getLikeCount(film.getId()));
+
+        buffer.flush();
+        assertEquals(2, buffer.getLikeCount(film.getId()));
+        assertEquals(Set.of(2, 3), filmStorage.getById(film.getId()).getLikes());
+    }
+
+    @Test
+    @DisplayName("Чтение видит еще не записанные лайки")
+    void applyPendingTest() {
+        buffer.addLike(film.getId(), 2);
+        buffer.removeLike(film.getId(), 1);
+
+        Film read = Film.builder().id(film.getId()).build();
+        read.getLikes().add(1);
+        buffer.applyPending(List.of(read));
+
+        assertEquals(Set.of(2), read.getLikes());
+        assertTrue(savedEvents.isEmpty());
+    }
+
+    @Test
+    @DisplayName("После остановки лайки пишутся в хранилище сразу")
+    void afterStopTest() throws InterruptedException {
+        buffer.addLike(film.getId(), 1);
+        buffer.stop();
+        assertEquals(Set.of(1), filmStorage.getById(film.getId()).getLikes());
+
+        buffer.addLike(film.getId(), 2);
+        buffer.removeLike(film.getId(), 1);
+
+        assertEquals(Set.of(2), filmStorage.getById(film.getId()).getLikes());
+        assertEquals(1, buffer.getLikeCount(film.getId()));
+        assertEquals(List.of("ADD", "ADD", "REMOVE"), savedEvents.stream()
+                .map(Event::getOperation)
+                .collect(Collectors.toList()));
+    }
+}
@@ -0,0 +1,117 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.jdbc.Sql;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmField;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.storage.director.DirectorsStorage;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@Sql(scripts = "file:src/main/resources/data.sql", executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+@DisplayName("Тесты DbDirectorsStorage")
+class DbDirectorsStorageTest {
+
+    private final DirectorsStorage directorsStorage;
+    private final FilmStorage filmStorage;
+
+    @Test
+    @DisplayName("Созданный режиссер сразу виден в закэшированном справочнике")
+    void createTest() {
+        assertTrue(directorsStorage.getAll().isEmpty());
+        Director director = createDirector("Francis Ford Coppola");
+
+        assertEquals(List.of(director), directorsStorage.getAll());
+        assertEquals("Francis Ford Coppola", directorsStorage.getDirectorById(director.getId())
+                .orElseThrow().getName());
+    }
+
+    @Test
+    @DisplayName("Переименование режиссера видно в справочнике и в закэшированном фильме")
+    void updateTest() {
+        Director director = createDirector("Francis Ford Coppola");
+        Film film = createFilm(director);
+        assertEquals("Francis Ford Coppola", directorName(filmStorage.getById(film.getId())));
+
+        Director renamed = new Director();
+        renamed.setId(director.getId());
+        renamed.setName("Francis Coppola");
+        directorsStorage.update(renamed);
+
+        assertEquals("Francis Coppola", directorsStorage.getDirectorById(director.getId()).orElseThrow().getName());
+        assertEquals("Francis Coppola", directorName(filmStorage.getById(film.getId())));
+        assertEquals("Francis Coppola", directorName(filmStorage.getAll(FilmField.ALL).get(0)));
+    }
+
+    @Test
+    @DisplayName("Удаленный режиссер пропадает из справочника и из закэшированного фильма")
+    void deleteTest() {
+        Director director = createDirector("Francis Ford Coppola");
+        Film film = createFilm(director);
+        assertEquals(Set.of(director), filmStorage.getById(film.getId()).getDirectors());
+
+        directorsStorage.delete(director);
+
+        assertTrue(directorsStorage.getAll().isEmpty());
+        assertTrue(directorsStorage.getDirectorById(director.getId()).isEmpty());
+        assertTrue(filmStorage.getById(film.getId()).getDirectors().isEmpty());
+    }
+
+    @Test
+    @DisplayName("Смена режиссеров фильма сбрасывает его запись в кэше")
+    void updateDirectorsForTest() {
+        Director first = createDirector("Francis Ford Coppola");
+        Director second = createDirector("Sofia Coppola");
+        Film film = createFilm(first);
+        assertEquals(Set.of(first), filmStorage.getById(film.getId()).getDirectors());
+
+        film.getDirectors().clear();
+        film.getDirectors().add(second);
+        directorsStorage.updateDirectorsFor(film);
+
+        assertEquals(Set.of(second), filmStorage.getById(film.getId()).getDirectors());
+    }
+
+    private Director createDirector(String name) {
+        Director director = new Director();
+        director.setName(name);
+        return directorsStorage.create(director);
+    }
+
+    private Film createFilm(Director director) {
+        Film film = Film.builder()
+                .name("The Godfather")
+                .description("description")
+                .duration(175)
+                .releaseDate(LocalDate.of(1972, 3, 14))
+                .mpa(new Mpa(4, null, null))
+                .directors(new HashSet<>())
+                .build();
+        film.getDirectors().add(director);
+        filmStorage.create(film);
+        directorsStorage.updateDirectorsFor(film);
+        return film;
+    }
+
+    private static String directorName(Film film) {
+        return film.getDirectors().iterator().next().getName();
+    }
+}
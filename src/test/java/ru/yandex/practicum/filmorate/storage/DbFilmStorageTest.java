@@ -1,31 +1,43 @@
 package ru.yandex.practicum.filmorate.storage;
 
 import lombok.RequiredArgsConstructor;
-import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.jdbc.Sql;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.model.Director;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmField;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.model.LikeStatus;
 import ru.yandex.practicum.filmorate.model.Mpa;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.director.DirectorsStorage;
 import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
 import ru.yandex.practicum.filmorate.storage.user.UserStorage;
 
 import java.time.LocalDate;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 @SpringBootTest
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
 @AutoConfigureTestDatabase
 @RequiredArgsConstructor(onConstructor_ = @Autowired)
 @Sql(scripts = "file:src/main/resources/data.sql", executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
 @DisplayName("Тесты DbFilmStorage")
-@Disabled
 class DbFilmStorageTest {
 
     private static final String FILM_NAME = "The Godfather";
@@ -35,6 +47,9 @@ class DbFilmStorageTest {
     private static final Mpa MPA = new Mpa(4, "R", "Лицам до 17 лет просматривать фильм можно только в присутствии взрослого");
     private final FilmStorage filmStorage;
     private final UserStorage userStorage;
+    private final PlatformTransactionManager transactionManager;
+    private final JdbcOperations jdbcTemplate;
+    private final DirectorsStorage directorsStorage;
 
     @Test
     @DisplayName("Создание фильма")
@@ -68,15 +83,58 @@ class DbFilmStorageTest {
         assertEquals(1, film.getId());
     }
 
+    @Test
+    @DisplayName("Пакетное создание фильмов со связями")
+    void createAllTest() {
+        Director director = new Director();
+        director.setName("Francis Ford Coppola");
+        directorsStorage.create(director);
+        Film first = makeFilm();
+        first.getGenres().add(new Genre(1, null));
+        first.getDirectors().add(director);
+        Film second = makeFilm();
+        second.setName("The Godfather Part II");
+        second.getGenres().add(new Genre(2, null));
+        second.getGenres().add(new Genre(4, null));
+
+        List<Integer> ids = filmStorage.createAll(List.of(first, second));
+
+        assertEquals(List.of(first.getId(), second.getId()), ids);
+        Film storedFirst = filmStorage.getById(ids.get(0));
+        assertEquals(FILM_NAME, storedFirst.getName());
+        assertEquals(List.of(1), genreIds(storedFirst));
+        assertEquals(Set.of(director), storedFirst.getDirectors());
+        Film storedSecond = filmStorage.getById(ids.get(1));
+        assertEquals("The Godfather Part II", storedSecond.getName());
+        assertEquals(List.of(2, 4), genreIds(storedSecond));
+        assertTrue(storedSecond.getDirectors().isEmpty());
+        assertEquals(List.of(ids.get(1)), filmStorage.getPopular(10, 4, null, FilmField.ALL).stream()
+                .map(Film::getId)
+                .collect(Collectors.toList()));
+    }
+
     @Test
     @DisplayName("Получение всех фильмов")
     void getAllTest() {
         filmStorage.create(makeFilm());
         filmStorage.create(makeFilm());
-        List<Film> films = filmStorage.getAll();
+        List<Film> films = filmStorage.getAll(FilmField.ALL);
         assertEquals(2, films.size());
     }
 
+    @Test
+    @DisplayName("Незапрошенные связи фильмов не загружаются")
+    void getAllWithFieldsTest() {
+        Film film = makeFilm();
+        film.getGenres().add(new Genre(1, "Комедия"));
+        filmStorage.create(film);
+        assertEquals(1, filmStorage.getAll(FilmField.ALL).get(0).getGenres().size());
+        Film brief = filmStorage.getAll(FilmField.parse(List.of("name"))).get(0);
+        assertEquals(FILM_NAME, brief.getName());
+        assertTrue(brief.getGenres().isEmpty());
+        assertNull(brief.getMpa().getName());
+    }
+
     @Test
     @DisplayName("Добавление лайка")
     void addLikeTest() {
@@ -98,13 +156,122 @@ class DbFilmStorageTest {
     }
 
     @Test
-    @DisplayName("Получение списка популярных фильмов")
-    void getPopularTest() {
+    @DisplayName("Краткий ответ на лайк: повторный лайк и повторное снятие ничего не меняют")
+    void likeStatusTest() {
+        userStorage.create(makeUser());
+        User other = makeUser();
+        other.setLogin("jobs");
+        other.setEmail("jobs@apple.com");
+        userStorage.create(other);
         filmStorage.create(makeFilm());
+
+        assertEquals(new LikeStatus(1, 1, true), filmStorage.addLike(1, 1));
+        assertEquals(new LikeStatus(1, 1, true), filmStorage.addLike(1, 1));
+        assertEquals(new LikeStatus(1, 2, true), filmStorage.addLike(1, 2));
+        assertEquals(2, countLikes());
+        assertEquals(2, likesCount(1));
+
+        assertEquals(new LikeStatus(1, 1, false), filmStorage.removeLike(1, 1));
+        assertEquals(new LikeStatus(1, 1, false), filmStorage.removeLike(1, 1));
+        assertEquals(1, countLikes());
+        assertEquals(1, likesCount(1));
+        assertEquals(Set.of(2), filmStorage.getById(1).getLikes());
+    }
+
+    @Test
+    @DisplayName("Лайк, уже записанный в базу мимо индексов, MERGE не дублирует")
+    void mergeExistingLikeTest() {
+        userStorage.create(makeUser());
         filmStorage.create(makeFilm());
+        jdbcTemplate.update("INSERT INTO LIKES (USER_ID, FILM_ID) VALUES (1, 1);");
+
+        assertEquals(new LikeStatus(1, 0, true), filmStorage.addLike(1, 1));
+        assertEquals(1, countLikes());
+        assertEquals(0, likesCount(1));
+    }
+
+    @Test
+    @DisplayName("Счетчик лайков следует за пакетной записью лайков и удалением пользователя")
+    void likesCountUpkeepTest() {
+        userStorage.create(makeUser());
+        User other = makeUser();
+        other.setLogin("jobs");
+        other.setEmail("jobs@apple.com");
+        userStorage.create(other);
         filmStorage.create(makeFilm());
         filmStorage.create(makeFilm());
-        List<Film> populars = filmStorage.getPopular(3, 1, 1972);
+
+        filmStorage.addLikes(List.of(new Like(1, 1), new Like(2, 1), new Like(2, 2)));
+        filmStorage.addLikes(List.of(new Like(2, 2)));
+        assertEquals(1, likesCount(1));
+        assertEquals(2, likesCount(2));
+        assertEquals(List.of(2, 1), popularIds());
+
+        filmStorage.removeLikes(List.of(new Like(2, 1), new Like(1, 2)));
+        assertEquals(1, likesCount(1));
+        assertEquals(1, likesCount(2));
+
+        userStorage.deleteUserById(1);
+        assertEquals(0, likesCount(1));
+        assertEquals(1, likesCount(2));
+        assertEquals(List.of(2, 1), popularIds());
+        assertEquals(countLikes(), likesCount(1) + likesCount(2));
+    }
+
+    @Test
+    @DisplayName("Постраничное чтение фильмов по id")
+    void getPageTest() {
+        for (int i = 0; i < 5; i++) {
+            filmStorage.create(makeFilm());
+        }
+        assertEquals(List.of(1, 2), filmIds(filmStorage.getPage(0, 2, FilmField.ALL)));
+        assertEquals(List.of(3, 4), filmIds(filmStorage.getPage(2, 2, FilmField.ALL)));
+        assertEquals(List.of(5), filmIds(filmStorage.getPage(4, 2, FilmField.ALL)));
+        assertTrue(filmStorage.getPage(5, 2, FilmField.ALL).isEmpty());
+        assertEquals(MPA.getName(), filmStorage.getPage(0, 1, FilmField.ALL).get(0).getMpa().getName());
+    }
+
+    @Test
+    @DisplayName("Фильмы режиссера сортируются и делятся на страницы в базе")
+    void getFilmsByDirectorTest() {
+        Director director = new Director();
+        director.setName("Francis Ford Coppola");
+        directorsStorage.create(director);
+        userStorage.create(makeUser());
+        User other = makeUser();
+        other.setLogin("jobs");
+        other.setEmail("jobs@apple.com");
+        userStorage.create(other);
+        for (LocalDate releaseDate : List.of(LocalDate.of(1980, 1, 1), LocalDate.of(1970, 1, 1),
+                LocalDate.of(1990, 1, 1))) {
+            Film film = makeFilm();
+            film.setReleaseDate(releaseDate);
+            film.getDirectors().add(director);
+            directorsStorage.updateDirectorsFor(filmStorage.create(film));
+        }
+        filmStorage.create(makeFilm());
+        filmStorage.addLike(1, 1);
+        filmStorage.addLike(1, 2);
+        filmStorage.addLike(3, 1);
+
+        assertEquals(List.of(2, 1), filmIds(filmStorage.getFilmsByDirector(director, "year", 2, 0, FilmField.ALL)));
+        assertEquals(List.of(3), filmIds(filmStorage.getFilmsByDirector(director, "year", 2, 2, FilmField.ALL)));
+        assertEquals(List.of(2, 3, 1), filmIds(filmStorage.getFilmsByDirector(director, "likes", 10, 0,
+                FilmField.ALL)));
+        assertEquals(List.of(3), filmIds(filmStorage.getFilmsByDirector(director, "likes", 1, 1, FilmField.ALL)));
+        assertEquals(Set.of(director), filmStorage.getFilmsByDirector(director, "likes", 1, 0, FilmField.ALL)
+                .get(0).getDirectors());
+    }
+
+    @Test
+    @DisplayName("Получение списка популярных фильмов")
+    void getPopularTest() {
+        for (int i = 0; i < 4; i++) {
+            Film film = makeFilm();
+            film.getGenres().add(new Genre(1, "Комедия"));
+            filmStorage.create(film);
+        }
+        List<Film> populars = filmStorage.getPopular(3, 1, 1972, FilmField.ALL);
         assertEquals(3, populars.size());
     }
 
@@ -118,6 +285,72 @@ class DbFilmStorageTest {
         assertFalse(isExist);
     }
 
+    @Test
+    @DisplayName("Кэш фильма сбрасывается после фиксации транзакции")
+    void cacheInvalidatedAfterCommitTest() {
+        filmStorage.create(makeFilm());
+        assertEquals(FILM_NAME, filmStorage.getById(1).getName());
+
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.executeWithoutResult(status -> {
+            Film film = filmStorage.getById(1);
+            film.setName("Updated name");
+            filmStorage.update(film);
+            assertEquals("Updated name", filmStorage.getById(1).getName());
+            // параллельный читатель видит зафиксированную версию и кладет ее в кэш
+            assertEquals(FILM_NAME, CompletableFuture.supplyAsync(() -> filmStorage.getById(1).getName()).join());
+        });
+        assertEquals("Updated name", filmStorage.getById(1).getName());
+
+        transaction.executeWithoutResult(status -> {
+            Film film = filmStorage.getById(1);
+            film.setName("Rolled back");
+            filmStorage.update(film);
+            status.setRollbackOnly();
+        });
+        assertEquals("Updated name", filmStorage.getById(1).getName());
+    }
+
+    @Test
+    @DisplayName("Откат транзакции не меняет индексы в памяти")
+    void indexesUntouchedOnRollbackTest() {
+        userStorage.create(makeUser());
+        filmStorage.create(makeFilm());
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            assertEquals(new LikeStatus(1, 1, true), filmStorage.addLike(1, 1));
+            status.setRollbackOnly();
+        });
+        assertTrue(filmStorage.getById(1).getLikes().isEmpty());
+
+        assertEquals(new LikeStatus(1, 1, true), filmStorage.addLike(1, 1));
+        assertEquals(Set.of(1), filmStorage.getById(1).getLikes());
+        assertEquals(new LikeStatus(1, 0, false), filmStorage.removeLike(1, 1));
+    }
+
+    private static List<Integer> filmIds(List<Film> films) {
+        return films.stream()
+                .map(Film::getId)
+                .collect(Collectors.toList());
+    }
+
+    private List<Integer> popularIds() {
+        return filmIds(filmStorage.getPopular(10, null, null, Set.of(FilmField.ID)));
+    }
+
+    private static List<Integer> genreIds(Film film) {
+        return film.getGenres().stream()
+                .map(Genre::getId)
+                .collect(Collectors.toList());
+    }
+
+    private int countLikes() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM LIKES;", Integer.class);
+    }
+
+    private int likesCount(int filmId) {
+        return jdbcTemplate.queryForObject("SELECT LIKES_COUNT FROM FILMS WHERE ID=?;", Integer.class, filmId);
+    }
 
     private Film makeFilm() {
         return Film.builder()
@@ -0,0 +1,142 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.transaction.annotation.AnnotationTransactionAttributeSource;
+import org.springframework.transaction.interceptor.TransactionInterceptor;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.Review;
+import ru.yandex.practicum.filmorate.storage.review.DbReviewStorage;
+import ru.yandex.practicum.filmorate.storage.review.ReviewStorage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * DbReviewStorage на настоящей H2 со схемой из schema.sql. Хранилище обернуто в прокси
+ * с транзакциями, как в приложении.
+ */
+@DisplayName("Тесты DbReviewStorage")
+class DbReviewStorageTest {
+
+    private static final int VOTERS = 64;
+
+    private EmbeddedDatabase database;
+    private JdbcTemplate jdbcTemplate;
+    private ReviewStorage storage;
+
+    @BeforeEach
+    void init() {
+        database = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .addScript("classpath:schema.sql")
+                .build();
+        jdbcTemplate = new JdbcTemplate(database);
+        jdbcTemplate.execute("SET DEFAULT_LOCK_TIMEOUT 10000");
+        jdbcTemplate.execute("INSERT INTO MPAS VALUES (1, 'G', 'G')");
+        jdbcTemplate.execute("INSERT INTO USERS (NAME, LOGIN, EMAIL, BIRTHDAY) " +
+                "SELECT 'user' || X, 'login' || X, 'user' || X || '@mail.ru', DATE '1990-01-01' " +
+                "FROM SYSTEM_RANGE(1, " + VOTERS + ")");
+        jdbcTemplate.execute("INSERT INTO FILMS (NAME, DESCRIPTION, DURATION, RELEASE_DATE, MPA_ID) " +
+                "VALUES ('film', 'description', 100, DATE '2000-01-01', 1), " +
+                "('film2', 'description', 100, DATE '2000-01-01', 1)");
+        jdbcTemplate.execute("INSERT INTO REVIEWS (CONTENT, IS_POSITIVE, USER_ID, FILM_ID) VALUES ('review', TRUE, 1, 1)");
+
+        ProxyFactory factory = new ProxyFactory(new DbReviewStorage(jdbcTemplate));
+        factory.addAdvice(new TransactionInterceptor(new DataSourceTransactionManager(database),
+                new AnnotationTransactionAttributeSource()));
+        storage = (ReviewStorage) factory.getProxy();
+    }
+
+    @AfterEach
+    void shutdown() {
+        database.shutdown();
+    }
+
+    @Test
+    @DisplayName("Рейтинг считается по разнице между новой и старой реакцией")
+    void deltaTest() {
+        assertEquals(1, storage.setLike(1, 2).getUseful());
+        assertEquals(1, storage.setLike(1, 2).getUseful());
+        assertEquals(-1, storage.setDislike(1, 2).getUseful());
+        assertFalse(storage.removeLike(1, 2));
+        assertTrue(storage.removeDislike(1, 2));
+        assertEquals(0, storage.getById(1).getUseful());
+        assertEquals(1, storage.setLike(1, 3).getUseful());
+        assertThrows(NotFoundException.class, () -> storage.setLike(2, 3));
+    }
+
+    @Test
+    @DisplayName("Параллельные голоса не теряются")
+    void concurrentVotesTest() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(VOTERS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> votes = new ArrayList<>();
+        for (int userId = 1; userId <= VOTERS; userId++) {
+            int voter = userId;
+            votes.add(executor.submit(() -> {
+                start.await();
+                storage.setLike(1, voter);
+                if (voter % 2 == 0) {
+                    storage.setDislike(1, voter);
+                }
+                if (voter % 4 == 0) {
+                    storage.removeDislike(1, voter);
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> vote : votes) {
+            vote.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        // нечетные оставили лайк, четные не кратные 4 - дизлайк, кратные 4 сняли реакцию
+        int expected = VOTERS / 2 - VOTERS / 4;
+        assertEquals(expected, storage.getById(1).getUseful());
+        assertEquals(expected, jdbcTemplate.queryForObject(
+                "SELECT SUM(CASE WHEN LIKE_FLAG THEN 1 WHEN NOT LIKE_FLAG THEN -1 ELSE 0 END) " +
+                        "FROM REVIEWS_LIKES WHERE REVIEW_ID = 1", Integer.class));
+    }
+
+    @Test
+    @DisplayName("Постраничный вывод по курсору (полезность, id)")
+    void pageTest() {
+        jdbcTemplate.execute("INSERT INTO REVIEWS (CONTENT, IS_POSITIVE, USER_ID, FILM_ID, USEFUL) " +
+                "SELECT 'review', TRUE, 1, MOD(X, 2) + 1, MOD(X, 3) FROM SYSTEM_RANGE(2, 9)");
+        // id: полезность (фильм) - 1: 0 (1), 2: 2 (1), 3: 0 (2), 4: 1 (1), 5: 2 (2),
+        // 6: 0 (1), 7: 1 (2), 8: 2 (1), 9: 0 (2)
+        assertEquals(List.of(2, 5, 8, 4), ids(storage.get(4)));
+        assertEquals(List.of(7, 1, 3, 6), ids(storage.getPage(1, 4, 4)));
+        assertEquals(List.of(9), ids(storage.getPage(0, 6, 4)));
+
+        assertEquals(List.of(2, 8), ids(storage.getByFilmId(1, 2)));
+        assertEquals(List.of(4, 1), ids(storage.getPageByFilmId(1, 2, 8, 2)));
+        assertEquals(List.of(6), ids(storage.getPageByFilmId(1, 0, 1, 2)));
+        assertEquals(List.of(), ids(storage.getPageByFilmId(1, 0, 6, 2)));
+    }
+
+    private static List<Integer> ids(List<Review> reviews) {
+        return reviews.stream()
+                .map(Review::getReviewId)
+                .collect(Collectors.toList());
+    }
+}
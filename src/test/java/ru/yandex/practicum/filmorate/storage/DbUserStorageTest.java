@@ -1,13 +1,16 @@
 package ru.yandex.practicum.filmorate.storage;
 
 import lombok.RequiredArgsConstructor;
-import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.jdbc.Sql;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.storage.user.UserStorage;
 
@@ -17,15 +20,16 @@ import java.util.List;
 import static org.junit.jupiter.api.Assertions.*;
 
 @SpringBootTest
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
 @AutoConfigureTestDatabase
 @RequiredArgsConstructor(onConstructor_ = @Autowired)
 @Sql(scripts = "file:src/main/resources/data.sql", executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
 @DisplayName("Тесты DbUserStorage")
-@Disabled
 public class DbUserStorageTest {
 
     private static int k = 0;
     private final UserStorage storage;
+    private final PlatformTransactionManager transactionManager;
 
     @Test
     @DisplayName("Создание пользователя")
@@ -111,6 +115,43 @@ public class DbUserStorageTest {
         assertEquals(1, commons.size());
     }
 
+    @Test
+    @DisplayName("Получение нескольких общих друзей вместе с их друзьями")
+    void getSeveralCommonFriends() {
+        for (int i = 0; i < 4; i++) {
+            storage.create(makeUser());
+        }
+        storage.addToFriends(1, 3);
+        storage.addToFriends(1, 4);
+        storage.addToFriends(2, 3);
+        storage.addToFriends(2, 4);
+        storage.addToFriends(3, 4);
+        List<User> commons = storage.getCommonFriends(1, 2);
+        assertEquals(2, commons.size());
+        assertEquals(3, commons.get(0).getId());
+        assertEquals(4, commons.get(1).getId());
+        assertEquals(1, commons.get(0).getFriends().size());
+        assertTrue(commons.get(1).getFriends().isEmpty());
+    }
+
+    @Test
+    @DisplayName("Общие друзья после удаления дружбы и пользователя")
+    void getCommonFriendsAfterRemovalTest() {
+        for (int i = 0; i < 5; i++) {
+            storage.create(makeUser());
+        }
+        for (int friendId = 3; friendId <= 5; friendId++) {
+            storage.addToFriends(1, friendId);
+            storage.addToFriends(2, friendId);
+        }
+        storage.removeFromFriends(2, 4);
+        storage.deleteUserById(5);
+        List<User> commons = storage.getCommonFriends(1, 2);
+        assertEquals(1, commons.size());
+        assertEquals(3, commons.get(0).getId());
+        assertEquals(2, storage.getFriendList(1).size());
+    }
+
     @Test
     @DisplayName("Проверка наличия пользователя в базе")
     void isExistsTest() {
@@ -121,6 +162,36 @@ public class DbUserStorageTest {
         assertFalse(isExist);
     }
 
+    @Test
+    @DisplayName("Проверка сразу нескольких пользователей")
+    void checkExistsTest() {
+        storage.create(makeUser());
+        storage.create(makeUser());
+        assertDoesNotThrow(() -> storage.checkExists(1, 2));
+        assertThrows(NotFoundException.class, () -> storage.checkExists(1, 11));
+        assertThrows(NotFoundException.class, () -> storage.getById(11));
+    }
+
+    @Test
+    @DisplayName("Индекс id меняется только после фиксации транзакции")
+    void checkExistsAfterRollbackTest() {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.executeWithoutResult(status -> {
+            storage.create(makeUser());
+            status.setRollbackOnly();
+        });
+        assertFalse(storage.isExists(1));
+
+        storage.create(makeUser());
+        transaction.executeWithoutResult(status -> {
+            storage.deleteUserById(2);
+            status.setRollbackOnly();
+        });
+        assertDoesNotThrow(() -> storage.checkExists(2));
+        storage.deleteUserById(2);
+        assertThrows(NotFoundException.class, () -> storage.checkExists(2));
+    }
+
     private User makeUser() {
         k++;
         return User.builder()
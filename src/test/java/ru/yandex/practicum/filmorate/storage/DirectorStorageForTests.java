@@ -4,9 +4,7 @@ import ru.yandex.practicum.filmorate.model.Director;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.storage.director.DirectorsStorage;
 
-import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
 
 public class DirectorStorageForTests implements DirectorsStorage {
@@ -36,22 +34,7 @@ public class DirectorStorageForTests implements DirectorsStorage {
     }
 
     @Override
-    public void deleteDirectorsFrom(Film film) {
+    public void updateDirectorsFor(Film film) {
 
     }
-
-    @Override
-    public void saveDirectorsFor(Film film) {
-
-    }
-
-    @Override
-    public List<Director> getFilmDirectors(Film film) {
-        return null;
-    }
-
-    @Override
-    public Map<Integer, HashSet<Director>> getDirectorsForFilms(List<Film> films) {
-        return null;
-    }
 }
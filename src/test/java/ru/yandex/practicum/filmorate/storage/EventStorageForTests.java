@@ -12,6 +12,11 @@ public class EventStorageForTests implements EventStorage {
 
     }
 
+    @Override
+    public void addEvents(List<Event> events) {
+
+    }
+
     @Override
     public List<Event> getUserFeeds(int userId) {
         return new ArrayList<>();
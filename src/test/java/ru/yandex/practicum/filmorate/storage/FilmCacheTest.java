@@ -0,0 +1,100 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.film.FilmCache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Тесты FilmCache")
+class FilmCacheTest {
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private Film load(int id) {
+        loads.incrementAndGet();
+        return Film.builder().id(id).name("film " + id).build();
+    }
+
+    @Test
+    @DisplayName("Повторное чтение берется из кэша и отдает копию")
+    void readThroughTest() {
+        FilmCache cache = new FilmCache(10, 0);
+        Film first = cache.get(1, this::load);
+        first.getLikes().add(5);
+        Film second = cache.get(1, this::load);
+
+        assertEquals(1, loads.get());
+        assertTrue(second.getLikes().isEmpty());
+        assertEquals(1, cache.getStats().getHits());
+        assertEquals(1, cache.getStats().getMisses());
+    }
+
+    @Test
+    @DisplayName("Вытесняется давно не читанный фильм")
+    void evictionTest() {
+        FilmCache cache = new FilmCache(2, 0);
+        cache.get(1, this::load);
+        cache.get(2, this::load);
+        cache.get(1, this::load);
+        cache.get(3, this::load);
+
+        assertTrue(cache.contains(1));
+        assertFalse(cache.contains(2));
+        assertTrue(cache.contains(3));
+        assertEquals(1, cache.getStats().getEvictions());
+        assertEquals(2, cache.getStats().getSize());
+    }
+
+    @Test
+    @DisplayName("Инвалидация удаляет фильм и не дает закэшировать начатую до нее загрузку этого фильма")
+    void invalidateTest() {
+        FilmCache cache = new FilmCache(10, 0);
+        cache.get(1, this::load);
+        cache.invalidate(1);
+        assertFalse(cache.contains(1));
+
+        cache.get(2, id -> {
+            cache.invalidateAll(List.of(2));
+            return load(id);
+        });
+        assertFalse(cache.contains(2));
+
+        cache.get(2, id -> {
+            cache.invalidateAll(List.of(3));
+            return load(id);
+        });
+        assertTrue(cache.contains(2));
+    }
+
+    @Test
+    @DisplayName("Параллельное чтение одного фильма не ломает кэш")
+    void concurrentReadTest() throws Exception {
+        FilmCache cache = new FilmCache(100, 0);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<Film>> results = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            int id = i % 10 + 1;
+            results.add(executor.submit(() -> cache.get(id, this::load)));
+        }
+        for (int i = 0; i < results.size(); i++) {
+            assertEquals(i % 10 + 1, results.get(i).get(5, TimeUnit.SECONDS).getId());
+        }
+        executor.shutdown();
+        for (int id = 1; id <= 10; id++) {
+            assertTrue(cache.contains(id));
+        }
+        FilmCache.Stats stats = cache.getStats();
+        assertEquals(200, stats.getHits() + stats.getMisses());
+        assertEquals(loads.get(), stats.getMisses());
+    }
+}
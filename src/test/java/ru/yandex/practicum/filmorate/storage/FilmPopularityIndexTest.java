@@ -0,0 +1,53 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.storage.film.FilmPopularityIndex;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Тесты FilmPopularityIndex")
+class FilmPopularityIndexTest {
+
+    private FilmPopularityIndex index;
+
+    @BeforeEach
+    void init() {
+        index = new FilmPopularityIndex();
+        index.rebuild(List.of(
+                new FilmPopularityIndex.Entry(1, 5, 1972, Set.of(2)),
+                new FilmPopularityIndex.Entry(2, 1, 1972, Set.of(1, 2)),
+                new FilmPopularityIndex.Entry(3, 3, 1999, Set.of(1))));
+    }
+
+    @Test
+    @DisplayName("Популярные фильмы без фильтров")
+    void getPopularTest() {
+        assertEquals(List.of(1, 3, 2), index.getPopular(10, null, null));
+        assertEquals(List.of(1, 3), index.getPopular(2, null, null));
+    }
+
+    @Test
+    @DisplayName("Популярные фильмы по жанру и году")
+    void getPopularFilteredTest() {
+        assertEquals(List.of(3, 2), index.getPopular(10, 1, null));
+        assertEquals(List.of(1, 2), index.getPopular(10, null, 1972));
+        assertEquals(List.of(2), index.getPopular(10, 1, 1972));
+        assertTrue(index.getPopular(10, 6, null).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Изменение числа лайков и удаление фильма")
+    void changeLikesTest() {
+        index.changeLikes(2, 10);
+        assertEquals(List.of(2, 1, 3), index.getPopular(10, null, null));
+        assertEquals(List.of(2, 3), index.getPopular(10, 1, null));
+        index.remove(2);
+        assertEquals(List.of(1, 3), index.getPopular(10, null, null));
+        assertEquals(List.of(3), index.getPopular(10, 1, null));
+    }
+}
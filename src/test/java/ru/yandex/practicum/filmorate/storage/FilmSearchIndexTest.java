@@ -0,0 +1,54 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.storage.film.FilmSearchIndex;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Тесты FilmSearchIndex")
+class FilmSearchIndexTest {
+
+    private FilmSearchIndex index;
+
+    @BeforeEach
+    void init() {
+        index = new FilmSearchIndex();
+        index.putFilm(1, "The Godfather");
+        index.putFilm(2, "Godzilla");
+        index.putFilm(3, "Up");
+        index.putDirector(1, "Francis Ford Coppola");
+        index.setFilmDirectors(1, Set.of(1));
+        index.setFilmDirectors(3, Set.of(1));
+    }
+
+    @Test
+    @DisplayName("Поиск по названию без учета регистра")
+    void searchByTitleTest() {
+        assertEquals(Set.of(1, 2), index.search(true, false, "GOD"));
+        assertEquals(Set.of(1), index.search(true, false, "father"));
+        assertEquals(Set.of(3), index.search(true, false, "up"));
+        assertTrue(index.search(true, false, "godfathers").isEmpty());
+    }
+
+    @Test
+    @DisplayName("Поиск по режиссеру и по обоим полям")
+    void searchByDirectorTest() {
+        assertEquals(Set.of(1, 3), index.search(false, true, "coppola"));
+        assertEquals(Set.of(1, 2, 3), index.search(true, true, "o"));
+    }
+
+    @Test
+    @DisplayName("Индекс обновляется при изменении фильмов и режиссеров")
+    void updateTest() {
+        index.putFilm(2, "Alien");
+        assertEquals(Set.of(1), index.search(true, false, "god"));
+        index.removeFilm(1);
+        assertEquals(Set.of(3), index.search(false, true, "coppola"));
+        index.removeDirector(1);
+        assertTrue(index.search(false, true, "coppola").isEmpty());
+    }
+}
@@ -0,0 +1,92 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.storage.film.FilmTrendingIndex;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Тесты FilmTrendingIndex")
+class FilmTrendingIndexTest {
+
+    private static final long DAY = Duration.ofDays(1).toMillis();
+
+    private FilmTrendingIndex index;
+    private long now;
+
+    @BeforeEach
+    void init() {
+        index = new FilmTrendingIndex();
+        now = System.currentTimeMillis();
+        index.putFilm(1, 2000, Set.of(1));
+        index.putFilm(2, 2010, Set.of(2));
+        index.putFilm(3, 2010, Set.of(1, 2));
+    }
+
+    @Test
+    @DisplayName("Свежий лайк важнее старых в коротком окне, но не в длинном")
+    void windowTest() {
+        index.addLike(1, now - 3 * DAY);
+        index.addLike(1, now - 3 * DAY);
+        index.addLike(2, now);
+
+        assertEquals(List.of(2, 1), index.getTrending(Duration.ofDays(1), 10, null, null));
+        assertEquals(List.of(1, 2), index.getTrending(Duration.ofDays(30), 10, null, null));
+    }
+
+    @Test
+    @DisplayName("Снятие лайка убирает его вклад")
+    void removeLikeTest() {
+        index.addLike(1, now - DAY);
+        index.addLike(2, now);
+        index.removeLike(2, now);
+
+        assertEquals(List.of(1), index.getTrending(Duration.ofDays(7), 10, null, null));
+    }
+
+    @Test
+    @DisplayName("Фильтры по жанру и году и ограничение количества")
+    void filtersTest() {
+        index.addLike(1, now);
+        index.addLike(2, now);
+        index.addLike(2, now);
+        index.addLike(3, now - DAY);
+
+        assertEquals(List.of(1, 3), index.getTrending(Duration.ofDays(7), 10, 1, null));
+        assertEquals(List.of(2, 3), index.getTrending(Duration.ofDays(7), 10, null, 2010));
+        assertEquals(List.of(3), index.getTrending(Duration.ofDays(7), 10, 1, 2010));
+        assertEquals(List.of(2), index.getTrending(Duration.ofDays(7), 1, null, null));
+    }
+
+    @Test
+    @DisplayName("Удаленный фильм пропадает из трендов")
+    void removeFilmTest() {
+        index.addLike(1, now);
+        index.addLike(2, now);
+        index.removeFilm(1);
+
+        assertEquals(List.of(2), index.getTrending(Duration.ofDays(7), 10, null, null));
+    }
+
+    @Test
+    @DisplayName("Пересчет к новому опорному моменту сохраняет порядок")
+    void rescaleTest() {
+        index.addLike(1, now);
+        index.addLike(1, now);
+        index.addLike(2, now + 600 * DAY);
+        index.addLike(3, now + 600 * DAY - DAY);
+
+        assertEquals(List.of(2, 3, 1), index.getTrending(Duration.ofDays(1), 10, null, null));
+    }
+
+    @Test
+    @DisplayName("Неподдерживаемое окно")
+    void unsupportedWindowTest() {
+        assertThrows(IllegalArgumentException.class, () -> index.getTrending(Duration.ofDays(2), 10, null, null));
+    }
+}
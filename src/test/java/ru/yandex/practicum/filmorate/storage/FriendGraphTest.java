@@ -0,0 +1,111 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.storage.user.FriendGraph;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Тесты FriendGraph")
+class FriendGraphTest {
+
+    private FriendGraph graph;
+
+    @BeforeEach
+    void init() {
+        graph = new FriendGraph();
+        FriendGraph.Edges edges = new FriendGraph.Edges();
+        edges.add(1, 3);
+        edges.add(1, 2);
+        edges.add(2, 3);
+        edges.add(3, 1);
+        graph.load(edges);
+    }
+
+    @Test
+    @DisplayName("Друзья из загруженного графа")
+    void loadTest() {
+        assertArrayEquals(new int[]{2, 3}, graph.getFriendIds(1));
+        assertArrayEquals(new int[]{3}, graph.getFriendIds(2));
+        assertArrayEquals(new int[0], graph.getFriendIds(4));
+        assertArrayEquals(new int[0], graph.getFriendIds(100));
+        assertEquals(2, graph.getFriendCount(1));
+        assertTrue(graph.hasFriend(3, 1));
+        assertFalse(graph.hasFriend(1, 4));
+    }
+
+    @Test
+    @DisplayName("Добавление и удаление друзей поверх загруженного графа")
+    void overlayTest() {
+        graph.addFriend(1, 5);
+        graph.removeFriend(1, 2);
+        graph.addFriend(7, 1);
+        assertArrayEquals(new int[]{3, 5}, graph.getFriendIds(1));
+        assertArrayEquals(new int[]{1}, graph.getFriendIds(7));
+        assertEquals(2, graph.getFriendCount(1));
+
+        graph.addFriend(1, 2);
+        graph.removeFriend(1, 5);
+        graph.addFriend(1, 3);
+        assertArrayEquals(new int[]{2, 3}, graph.getFriendIds(1));
+        assertEquals(2, graph.getFriendCount(1));
+    }
+
+    @Test
+    @DisplayName("Общие друзья")
+    void commonFriendsTest() {
+        graph.addFriend(2, 5);
+        graph.addFriend(1, 5);
+        assertArrayEquals(new int[]{3, 5}, graph.getCommonFriendIds(1, 2));
+        assertArrayEquals(new int[0], graph.getCommonFriendIds(1, 3));
+    }
+
+    @Test
+    @DisplayName("Удаление пользователя убирает ребра в обе стороны")
+    void removeUserTest() {
+        graph.addFriend(4, 3);
+        graph.removeUser(3);
+        assertArrayEquals(new int[]{2}, graph.getFriendIds(1));
+        assertArrayEquals(new int[0], graph.getFriendIds(2));
+        assertArrayEquals(new int[0], graph.getFriendIds(3));
+        assertArrayEquals(new int[0], graph.getFriendIds(4));
+        assertEquals(1, graph.getFriendCount(1));
+        assertEquals(0, graph.getFriendCount(3));
+        assertFalse(graph.hasFriend(1, 3));
+        assertFalse(graph.hasFriend(3, 1));
+        assertArrayEquals(new int[0], graph.getCommonFriendIds(1, 2));
+    }
+
+    @Test
+    @DisplayName("Удаленный пользователь не возвращается после слияния")
+    void removeUserCompactionTest() {
+        graph.removeUser(3);
+        for (int friendId = 10; friendId < 1100; friendId++) {
+            graph.addFriend(2, friendId);
+        }
+        assertArrayEquals(new int[]{2}, graph.getFriendIds(1));
+        assertEquals(1090, graph.getFriendCount(2));
+        assertEquals(10, graph.getFriendIds(2)[0]);
+        assertArrayEquals(new int[0], graph.getFriendIds(3));
+    }
+
+    @Test
+    @DisplayName("Слияние накопленных изменений не теряет ребер")
+    void compactionTest() {
+        for (int friendId = 10; friendId < 5010; friendId++) {
+            graph.addFriend(1, friendId);
+        }
+        for (int friendId = 10; friendId < 5010; friendId += 2) {
+            graph.removeFriend(1, friendId);
+        }
+        assertEquals(2 + 2500, graph.getFriendCount(1));
+        int[] friends = graph.getFriendIds(1);
+        assertEquals(2502, friends.length);
+        assertEquals(2, friends[0]);
+        assertEquals(3, friends[1]);
+        assertEquals(11, friends[2]);
+        assertEquals(5009, friends[friends.length - 1]);
+        assertArrayEquals(new int[]{3}, graph.getFriendIds(2));
+    }
+}
@@ -0,0 +1,46 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.storage.film.IdPresenceIndex;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Тесты IdPresenceIndex")
+class IdPresenceIndexTest {
+
+    private IdPresenceIndex index;
+
+    @BeforeEach
+    void init() {
+        index = new IdPresenceIndex();
+        index.addUser(1);
+        index.addUser(70_000);
+        index.addFilm(1);
+    }
+
+    @Test
+    @DisplayName("Пользователи и фильмы хранятся раздельно")
+    void containsTest() {
+        assertTrue(index.hasUser(1));
+        assertTrue(index.hasUser(70_000));
+        assertFalse(index.hasUser(2));
+        assertTrue(index.hasFilm(1));
+        assertFalse(index.hasFilm(70_000));
+    }
+
+    @Test
+    @DisplayName("Удаление и очистка")
+    void removeTest() {
+        index.removeUser(1);
+        index.removeFilm(5);
+        assertFalse(index.hasUser(1));
+        assertTrue(index.hasUser(70_000));
+        assertTrue(index.hasFilm(1));
+
+        index.clearUsers();
+        assertFalse(index.hasUser(70_000));
+        assertTrue(index.hasFilm(1));
+    }
+}
@@ -0,0 +1,268 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Event;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmField;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.Review;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.StatementRecorder.RecordedStatement;
+import ru.yandex.practicum.filmorate.storage.director.DbDirectorsStorage;
+import ru.yandex.practicum.filmorate.storage.event.DbEventStorage;
+import ru.yandex.practicum.filmorate.storage.film.DbFilmStorage;
+import ru.yandex.practicum.filmorate.storage.review.DbReviewStorage;
+import ru.yandex.practicum.filmorate.storage.user.DbUserStorage;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Проверяет планы запросов Db*Storage. Хранилища работают с заполненной базой через
+ * {@link StatementRecorder}, который запоминает каждый реально выполненный запрос с параметрами,
+ * и затем каждый запрос прогоняется через EXPLAIN. Тест падает, если H2 читает таблицу целиком
+ * в запросе с условием WHERE: полный проход разрешен только запросам без условий, которым
+ * по смыслу нужна вся таблица (перестроение индексов в памяти, выгрузка, справочники).
+ * Новый метод хранилища нужно вызвать в сценарии ниже.
+ */
+@SpringBootTest
+@AutoConfigureTestDatabase
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@DisplayName("Планы запросов к базе")
+class QueryPlanTest {
+
+    private static final Pattern TABLE_SCAN = Pattern.compile("/\\* PUBLIC\\.(\\w+)\\.tableScan");
+    private static final Pattern WHERE = Pattern.compile("\\bWHERE\\b");
+    private static final Set<String> TABLES = Set.of("FILMS", "FILM_GENRES", "LIKES", "FILMS_AND_DIRECTORS",
+            "DIRECTORS", "USERS", "FRIENDS", "REVIEWS", "REVIEWS_LIKES", "FEEDS", "MPAS", "GENRES");
+
+    private final StatementRecorder recorder;
+    private final JdbcTemplate jdbcTemplate;
+    private final ReferenceDataCache referenceData;
+    private final DbFilmStorage filmStorage;
+    private final DbUserStorage userStorage;
+    private final DbReviewStorage reviewStorage;
+    private final DbEventStorage eventStorage;
+    private final DbDirectorsStorage directorsStorage;
+
+    @TestConfiguration
+    static class RecorderConfig {
+        @Bean
+        static StatementRecorder statementRecorder() {
+            return new StatementRecorder();
+        }
+    }
+
+    @Test
+    @DisplayName("Полный проход таблицы распознается")
+    void detectsTableScanTest() throws SQLException {
+        assertEquals(Set.of("FILMS"), scannedTables(new RecordedStatement(
+                "SELECT * FROM FILMS WHERE DESCRIPTION = ?", List.of("description"))));
+        assertEquals(Set.of(), scannedTables(new RecordedStatement(
+                "SELECT * FROM FILMS WHERE ID = ?", List.of(1))));
+    }
+
+    @Test
+    @DisplayName("Запросы хранилищ идут по индексам")
+    void storageQueriesTest() throws SQLException {
+        seed();
+        recorder.start();
+        try {
+            runStorages();
+        } finally {
+            recorder.stop();
+        }
+        List<RecordedStatement> statements = recorder.getStatements();
+
+        Set<String> touched = statements.stream()
+                .flatMap(statement -> TABLES.stream()
+                        .filter(table -> Pattern.compile("\\b" + table + "\\b")
+                                .matcher(statement.getSql().toUpperCase(Locale.ROOT)).find()))
+                .collect(Collectors.toCollection(TreeSet::new));
+        assertEquals(new TreeSet<>(TABLES), touched, "Сценарий должен затрагивать все таблицы");
+
+        for (RecordedStatement statement : statements) {
+            if (!WHERE.matcher(statement.getSql().toUpperCase(Locale.ROOT)).find()) {
+                continue;
+            }
+            Set<String> scanned = scannedTables(statement);
+            assertTrue(scanned.isEmpty(), "Полный проход таблиц " + scanned + " в запросе: "
+                    + statement.getSql() + "\nПлан: " + explain(statement));
+        }
+    }
+
+    private void seed() {
+        jdbcTemplate.execute("INSERT INTO USERS (NAME, LOGIN, EMAIL, BIRTHDAY) " +
+                "SELECT 'user' || X, 'login' || X, 'user' || X || '@mail.ru', DATE '1990-01-01' " +
+                "FROM SYSTEM_RANGE(1, 500)");
+        jdbcTemplate.execute("INSERT INTO FILMS (NAME, DESCRIPTION, DURATION, RELEASE_DATE, MPA_ID) " +
+                "SELECT 'film' || X, 'description', 100, DATEADD(DAY, X, DATE '2000-01-01'), MOD(X, 5) + 1 " +
+                "FROM SYSTEM_RANGE(1, 500)");
+        jdbcTemplate.execute("INSERT INTO FILM_GENRES (GENRE_ID, FILM_ID) SELECT MOD(X, 6) + 1, X FROM SYSTEM_RANGE(1, 500)");
+        jdbcTemplate.execute("INSERT INTO LIKES (USER_ID, FILM_ID) " +
+                "SELECT U.X, F.X FROM SYSTEM_RANGE(1, 500) U, SYSTEM_RANGE(1, 500) F WHERE MOD(U.X + F.X, 25) = 0");
+        jdbcTemplate.execute("INSERT INTO FRIENDS (USER_ID, FRIEND_ID) SELECT X, MOD(X, 500) + 1 FROM SYSTEM_RANGE(1, 500)");
+        jdbcTemplate.execute("INSERT INTO DIRECTORS (NAME) SELECT 'director' || X FROM SYSTEM_RANGE(1, 50)");
+        jdbcTemplate.execute("INSERT INTO FILMS_AND_DIRECTORS (FILM_ID, DIRECTOR_ID) " +
+                "SELECT X, MOD(X, 50) + 1 FROM SYSTEM_RANGE(1, 500)");
+        jdbcTemplate.execute("INSERT INTO REVIEWS (CONTENT, IS_POSITIVE, USER_ID, FILM_ID, USEFUL) " +
+                "SELECT 'review', MOD(X, 2) = 0, MOD(X, 500) + 1, MOD(X * 7, 500) + 1, MOD(X, 11) " +
+                "FROM SYSTEM_RANGE(1, 1000)");
+        jdbcTemplate.execute("INSERT INTO REVIEWS_LIKES (USER_ID, REVIEW_ID, LIKE_FLAG) " +
+                "SELECT MOD(X, 500) + 1, X, TRUE FROM SYSTEM_RANGE(1, 1000)");
+        jdbcTemplate.execute("INSERT INTO FEEDS (USERID, ENTITYID, TIMESTAMP, EVENTTYPE, OPERATION) " +
+                "SELECT MOD(X, 500) + 1, X, X, 'LIKE', 'ADD' FROM SYSTEM_RANGE(1, 5000)");
+        jdbcTemplate.execute("ANALYZE");
+    }
+
+    /**
+     * Вызывает все методы хранилищ, которые обращаются к базе.
+     */
+    private void runStorages() {
+        referenceData.load();
+        Director director = referenceData.getDirector(1);
+        filmStorage.rebuildIdIndex();
+        filmStorage.rebuildPopularityIndex();
+        filmStorage.rebuildLikesIndex();
+        filmStorage.rebuildTrendingIndex();
+        filmStorage.rebuildSearchIndex();
+        userStorage.rebuildIdIndex();
+        userStorage.rebuildFriendGraph();
+
+        filmStorage.getAll(FilmField.ALL);
+        filmStorage.getPage(100, 20, FilmField.ALL);
+        filmStorage.exportAll((film, likeCount) -> {
+        });
+        filmStorage.getById(1);
+        filmStorage.getPopular(10, 1, null, FilmField.ALL);
+        filmStorage.getTrending(Duration.ofDays(7), 10, null, null);
+        filmStorage.getFilmsByDirector(director, "year", 10, 0, FilmField.ALL);
+        filmStorage.getFilmsByDirector(director, "likes", 10, 0, FilmField.ALL);
+        filmStorage.searchFilms(true, true, "film1", FilmField.ALL);
+        filmStorage.getCommonFilms(1, 24);
+        Film film = filmStorage.create(makeFilm(director));
+        film.getGenres().clear();
+        film.getGenres().add(new Genre(2, null));
+        filmStorage.update(film);
+        directorsStorage.updateDirectorsFor(film);
+        film.getDirectors().clear();
+        directorsStorage.updateDirectorsFor(film);
+        filmStorage.createAll(List.of(makeFilm(director), makeFilm(director)));
+        filmStorage.addLike(1, 1);
+        filmStorage.removeLike(24, 1);
+        filmStorage.addLikes(List.of(new Like(2, 1), new Like(3, 1)));
+        filmStorage.removeLikes(List.of(new Like(23, 2), new Like(2, 1)));
+        filmStorage.deleteFilmById(film.getId());
+
+        userStorage.getAll();
+        userStorage.getPage(100, 20);
+        User user = userStorage.create(User.builder()
+                .name("user").login("new_login").email("new@mail.ru").birthday(LocalDate.of(1990, 1, 1))
+                .build());
+        user.setName("updated");
+        userStorage.update(user);
+        userStorage.getById(1);
+        userStorage.addToFriends(user.getId(), 1);
+        userStorage.getFriendList(user.getId());
+        userStorage.getCommonFriends(user.getId(), 500);
+        userStorage.removeFromFriends(user.getId(), 1);
+        userStorage.getRecommendedFilmForUser(1);
+        userStorage.deleteUserById(2);
+
+        Review review = reviewStorage.create(Review.builder()
+                .content("review").isPositive(true).userId(3).filmId(3)
+                .build());
+        review.setContent("updated");
+        reviewStorage.update(review);
+        reviewStorage.getById(review.getReviewId());
+        reviewStorage.get(10);
+        reviewStorage.getByFilmId(1, 10);
+        reviewStorage.getPage(5, 100, 10);
+        reviewStorage.getPageByFilmId(1, 5, 100, 10);
+        reviewStorage.setLike(review.getReviewId(), 4);
+        reviewStorage.setDislike(review.getReviewId(), 4);
+        reviewStorage.removeDislike(review.getReviewId(), 4);
+        reviewStorage.setLike(review.getReviewId(), 5);
+        reviewStorage.removeLike(review.getReviewId(), 5);
+        reviewStorage.isExists(review.getReviewId());
+        reviewStorage.remove(review.getReviewId());
+
+        eventStorage.addEvent(makeEvent());
+        eventStorage.addEvents(List.of(makeEvent(), makeEvent()));
+        eventStorage.getUserFeeds(1);
+
+        Director created = new Director();
+        created.setName("director");
+        directorsStorage.create(created);
+        created.setName("updated");
+        directorsStorage.update(created);
+        directorsStorage.delete(created);
+    }
+
+    private static Film makeFilm(Director director) {
+        Film film = Film.builder()
+                .name("new film").description("description").duration(100)
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .mpa(new Mpa(1, null, null))
+                .directors(new HashSet<>(Set.of(director)))
+                .build();
+        film.getGenres().add(new Genre(1, null));
+        return film;
+    }
+
+    private static Event makeEvent() {
+        return Event.builder()
+                .userId(1).entityId(1).timestamp(1L).eventType("LIKE").operation("ADD")
+                .build();
+    }
+
+    private Set<String> scannedTables(RecordedStatement statement) throws SQLException {
+        Matcher matcher = TABLE_SCAN.matcher(explain(statement));
+        return matcher.results()
+                .map(result -> result.group(1))
+                .collect(Collectors.toCollection(TreeSet::new));
+    }
+
+    /**
+     * План запроса с теми же параметрами, с которыми его выполнило хранилище.
+     */
+    private String explain(RecordedStatement statement) throws SQLException {
+        try (Connection connection = recorder.getTarget().getConnection();
+             PreparedStatement explain = connection.prepareStatement("EXPLAIN " + statement.getSql())) {
+            for (int i = 0; i < statement.getParams().size(); i++) {
+                explain.setObject(i + 1, statement.getParams().get(i));
+            }
+            try (ResultSet rs = explain.executeQuery()) {
+                rs.next();
+                return rs.getString(1);
+            }
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.exception.DatabaseException;
+import ru.yandex.practicum.filmorate.model.Event;
+import ru.yandex.practicum.filmorate.storage.event.EventStorage;
+import ru.yandex.practicum.filmorate.storage.event.QueuedEventStorage;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Тесты QueuedEventStorage")
+class QueuedEventStorageTest {
+
+    @Test
+    @DisplayName("События пишутся пачками в порядке поступления и дописываются при остановке")
+    void asyncTest() throws Exception {
+        RecordingStorage recording = new RecordingStorage();
+        QueuedEventStorage storage = new QueuedEventStorage(recording, QueuedEventStorage.Mode.ASYNC, 100, 3);
+        recording.block();
+        storage.start();
+        for (int entityId = 1; entityId <= 10; entityId++) {
+            storage.addEvent(event(entityId % 2 + 1, entityId));
+        }
+        assertTrue(recording.events().isEmpty());
+
+        recording.unblock();
+        storage.stop();
+        assertEquals(List.of(1, 2, 3, 4, 5, 6, 7, 8, 9, 10), recording.events().stream()
+                .map(Event::getEntityId)
+                .collect(Collectors.toList()));
+        assertTrue(recording.batchSizes().stream().allMatch(size -> size <= 3));
+    }
+
+    @Test
+    @DisplayName("Чтение ленты и групповая запись дожидаются записи событий")
+    void awaitTest() throws Exception {
+        RecordingStorage recording = new RecordingStorage();
+        QueuedEventStorage async = new QueuedEventStorage(recording, QueuedEventStorage.Mode.ASYNC, 100, 10);
+        async.start();
+        async.addEvent(event(1, 1));
+        assertEquals(1, async.getUserFeeds(1).size());
+        async.stop();
+
+        QueuedEventStorage groupCommit = new QueuedEventStorage(recording, QueuedEventStorage.Mode.GROUP_COMMIT,
+                100, 10);
+        groupCommit.start();
+        groupCommit.addEvent(event(1, 2));
+        assertEquals(2, recording.events().size());
+        groupCommit.stop();
+    }
+
+    @Test
+    @DisplayName("При заполненной очереди запрос ждет свободного места")
+    void backpressureTest() throws Exception {
+        RecordingStorage recording = new RecordingStorage();
+        QueuedEventStorage storage = new QueuedEventStorage(recording, QueuedEventStorage.Mode.ASYNC, 2, 1);
+        recording.block();
+        storage.start();
+        ExecutorService producer = Executors.newSingleThreadExecutor();
+        Future<?> adding = producer.submit(() -> {
+            for (int entityId = 1; entityId <= 5; entityId++) {
+                storage.addEvent(event(1, entityId));
+            }
+        });
+        assertThrows(TimeoutException.class, () -> adding.get(300, TimeUnit.MILLISECONDS));
+
+        recording.unblock();
+        adding.get(5, TimeUnit.SECONDS);
+        producer.shutdown();
+        storage.stop();
+        assertEquals(5, recording.events().size());
+    }
+
+    @Test
+    @DisplayName("После остановки события пишутся сразу и никто не ждет закрытую очередь")
+    void afterStopTest() throws Exception {
+        RecordingStorage recording = new RecordingStorage();
+        QueuedEventStorage storage = new QueuedEventStorage(recording, QueuedEventStorage.Mode.GROUP_COMMIT,
+                100, 10);
+        storage.start();
+        storage.stop();
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+            storage.addEvent(event(1, 1));
+            assertEquals(1, storage.getUserFeeds(1).size());
+        });
+    }
+
+    @Test
+    @DisplayName("Падение писателя с Error не оставляет запросы ждать вечно")
+    void writerErrorTest() throws Exception {
+        RecordingStorage recording = new RecordingStorage();
+        QueuedEventStorage storage = new QueuedEventStorage(recording, QueuedEventStorage.Mode.GROUP_COMMIT,
+                100, 10);
+        storage.start();
+        recording.failWith(new StackOverflowError());
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+            assertThrows(DatabaseException.class, () -> storage.addEvent(event(1, 1)));
+            recording.failWith(null);
+            storage.addEvent(event(1, 2));
+            assertEquals(List.of(2), storage.getUserFeeds(1).stream()
+                    .map(Event::getEntityId)
+                    .collect(Collectors.toList()));
+        });
+        storage.stop();
+    }
+
+    private static Event event(int userId, int entityId) {
+        return Event.builder()
+                .userId(userId)
+                .entityId(entityId)
+                .eventType("FRIEND")
+                .operation("ADD")
+                .build();
+    }
+
+    private static class RecordingStorage implements EventStorage {
+        private final List<Event> events = new ArrayList<>();
+        private final List<Integer> batchSizes = new ArrayList<>();
+        private volatile CountDownLatch gate = new CountDownLatch(0);
+        private volatile Error failure;
+
+        void block() {
+            gate = new CountDownLatch(1);
+        }
+
+        void unblock() {
+            gate.countDown();
+        }
+
+        void failWith(Error error) {
+            failure = error;
+        }
+
+        synchronized List<Event> events() {
+            return new ArrayList<>(events);
+        }
+
+        synchronized List<Integer> batchSizes() {
+            return new ArrayList<>(batchSizes);
+        }
+
+        @Override
+        public synchronized void addEvent(Event event) {
+            events.add(event);
+        }
+
+        @Override
+        public void addEvents(List<Event> batch) {
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            synchronized (this) {
+                events.addAll(batch);
+                batchSizes.add(batch.size());
+            }
+        }
+
+        @Override
+        public synchronized List<Event> getUserFeeds(int userId) {
+            return events.stream()
+                    .filter(event -> event.getUserId() == userId)
+                    .collect(Collectors.toList());
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.storage.film.RecommendationEngine;
+import ru.yandex.practicum.filmorate.storage.film.UserLikesIndex;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Тесты RecommendationEngine")
+class RecommendationEngineTest {
+
+    private UserLikesIndex likesIndex;
+
+    @BeforeEach
+    void init() {
+        likesIndex = new UserLikesIndex();
+    }
+
+    @Test
+    @DisplayName("Фильмы соседей упорядочены по сумме голосов")
+    void recommendTest() {
+        like(1, 1, 2, 3);
+        like(2, 1, 2, 3, 4);
+        like(3, 1, 5, 6);
+        like(4, 7);
+        RecommendationEngine engine = new RecommendationEngine(likesIndex, 20, 20,
+                RecommendationEngine.Similarity.JACCARD);
+
+        assertEquals(List.of(4, 5, 6), engine.recommend(1));
+        assertEquals(List.of(), engine.recommend(4));
+        assertEquals(List.of(), engine.recommend(10));
+    }
+
+    @Test
+    @DisplayName("Ограничение числа соседей и размера ответа")
+    void limitsTest() {
+        like(1, 1, 2, 3);
+        like(2, 1, 2, 3, 4);
+        like(3, 1, 5, 6);
+
+        assertEquals(List.of(4), new RecommendationEngine(likesIndex, 1, 20,
+                RecommendationEngine.Similarity.JACCARD).recommend(1));
+        assertEquals(List.of(4, 5), new RecommendationEngine(likesIndex, 20, 2,
+                RecommendationEngine.Similarity.JACCARD).recommend(1));
+    }
+
+    @Test
+    @DisplayName("Мера Жаккара учитывает размер чужих лайков, пересечение - нет")
+    void similarityTest() {
+        like(1, 1, 2);
+        like(2, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17, 18, 19, 20);
+        like(3, 1, 21);
+
+        assertEquals(List.of(21), new RecommendationEngine(likesIndex, 1, 3,
+                RecommendationEngine.Similarity.JACCARD).recommend(1));
+        assertEquals(List.of(3, 4, 5), new RecommendationEngine(likesIndex, 1, 3,
+                RecommendationEngine.Similarity.OVERLAP).recommend(1));
+    }
+
+    @Test
+    @DisplayName("Удаленный фильм и пользователь не участвуют в рекомендациях")
+    void removalTest() {
+        like(1, 1, 2);
+        like(2, 1, 3);
+        like(3, 2, 4);
+        likesIndex.removeFilm(3);
+        likesIndex.removeUser(3);
+        RecommendationEngine engine = new RecommendationEngine(likesIndex, 20, 20,
+                RecommendationEngine.Similarity.JACCARD);
+
+        assertEquals(List.of(), engine.recommend(1));
+        assertArrayEquals(new int[]{1}, likesIndex.getLikers(2));
+    }
+
+    private void like(int userId, int... filmIds) {
+        for (int filmId : filmIds) {
+            likesIndex.add(userId, filmId);
+        }
+    }
+}
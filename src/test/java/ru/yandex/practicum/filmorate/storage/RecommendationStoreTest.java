@@ -0,0 +1,78 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.storage.film.RecommendationEngine;
+import ru.yandex.practicum.filmorate.storage.film.RecommendationStore;
+import ru.yandex.practicum.filmorate.storage.film.UserLikesIndex;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Тесты RecommendationStore")
+class RecommendationStoreTest {
+
+    private UserLikesIndex likesIndex;
+    private RecommendationStore store;
+
+    @BeforeEach
+    void init() {
+        likesIndex = new UserLikesIndex();
+        RecommendationEngine engine = new RecommendationEngine(likesIndex, 20, 20,
+                RecommendationEngine.Similarity.JACCARD);
+        store = new RecommendationStore(engine, likesIndex, false, 0, 2);
+        likesIndex.add(1, 1);
+        likesIndex.add(2, 1);
+        likesIndex.add(2, 2);
+        likesIndex.add(3, 2);
+        likesIndex.add(3, 3);
+    }
+
+    @Test
+    @DisplayName("Рекомендации считаются при промахе и дальше берутся из хранилища")
+    void getTest() {
+        RecommendationStore.Entry entry = store.get(1);
+        assertEquals(List.of(2), entry.getFilmIds());
+        assertSame(entry, store.get(1));
+
+        likesIndex.add(2, 4);
+        assertSame(entry, store.get(1));
+    }
+
+    @Test
+    @DisplayName("Изменение лайков пользователя требует пересчета")
+    void markDirtyTest() {
+        RecommendationStore.Entry entry = store.get(1);
+        likesIndex.add(1, 2);
+        store.markDirty(1);
+
+        RecommendationStore.Entry refreshed = store.get(1);
+        assertNotSame(entry, refreshed);
+        assertEquals(List.of(3), refreshed.getFilmIds());
+    }
+
+    @Test
+    @DisplayName("Фоновый пересчет начинает с измененных пользователей и ограничен пачкой")
+    void refreshTest() {
+        RecommendationStore.Entry first = store.get(1);
+        RecommendationStore.Entry third = store.get(3);
+        store.markDirty(3);
+
+        assertEquals(2, store.refresh());
+        assertNotSame(third, store.get(3));
+        assertSame(first, store.get(1));
+
+        assertEquals(2, store.refresh());
+        assertNotSame(first, store.get(1));
+    }
+
+    @Test
+    @DisplayName("Удаление пользователя убирает его рекомендации")
+    void removeTest() {
+        RecommendationStore.Entry entry = store.get(1);
+        store.remove(1);
+        assertNotSame(entry, store.get(1));
+    }
+}
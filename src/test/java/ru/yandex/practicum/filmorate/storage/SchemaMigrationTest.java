@@ -0,0 +1,100 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Проверяет, что schema.sql доводит до текущей схемы базу, созданную старой версией
+ * приложения (schema-baseline.sql), и что повторный запуск скрипта ничего не ломает.
+ */
+@DisplayName("Обновление схемы существующей базы")
+class SchemaMigrationTest {
+
+    private EmbeddedDatabase database;
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void init() {
+        database = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .addScript("classpath:schema-baseline.sql")
+                .build();
+        jdbcTemplate = new JdbcTemplate(database);
+        jdbcTemplate.execute("INSERT INTO MPAS VALUES (1, 'G', 'G')");
+        jdbcTemplate.execute("INSERT INTO USERS (NAME, LOGIN, EMAIL, BIRTHDAY) " +
+                "SELECT 'user' || X, 'login' || X, 'user' || X || '@mail.ru', DATE '1990-01-01' " +
+                "FROM SYSTEM_RANGE(1, 3)");
+        jdbcTemplate.execute("INSERT INTO FILMS (NAME, DESCRIPTION, DURATION, RELEASE_DATE, MPA_ID) " +
+                "SELECT 'film' || X, 'description', 100, DATE '2000-01-01', 1 FROM SYSTEM_RANGE(1, 2)");
+        jdbcTemplate.execute("INSERT INTO LIKES (USER_ID, FILM_ID) VALUES (1, 1), (2, 1), (3, 1), (1, 2)");
+        jdbcTemplate.execute("INSERT INTO DIRECTORS (NAME) VALUES ('director')");
+        jdbcTemplate.execute("INSERT INTO FILMS_AND_DIRECTORS VALUES (1, 1), (1, 1), (2, 1), (1, 1)");
+    }
+
+    @AfterEach
+    void shutdown() {
+        database.shutdown();
+    }
+
+    @Test
+    @DisplayName("Счетчик лайков добавляется и заполняется из LIKES")
+    void likesCountTest() {
+        migrate();
+        migrate();
+        assertEquals(List.of(3, 1), jdbcTemplate.queryForList(
+                "SELECT LIKES_COUNT FROM FILMS ORDER BY ID", Integer.class));
+    }
+
+    @Test
+    @DisplayName("Счетчик лайков пересчитывается из LIKES только при первом обновлении")
+    void likesCountBackfillOnceTest() {
+        migrate();
+        jdbcTemplate.update("UPDATE FILMS SET LIKES_COUNT = 10 WHERE ID = 1");
+        migrate();
+        assertEquals(List.of(10, 1), jdbcTemplate.queryForList(
+                "SELECT LIKES_COUNT FROM FILMS ORDER BY ID", Integer.class));
+        assertEquals(List.of("likes_count_backfill"), jdbcTemplate.queryForList(
+                "SELECT NAME FROM SCHEMA_MIGRATIONS", String.class));
+    }
+
+    @Test
+    @DisplayName("Старые лайки получают время создания, новые - текущее время")
+    void likesCreatedAtTest() {
+        migrate();
+        migrate();
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM LIKES WHERE CREATED_AT > TIMESTAMP '1970-01-01 00:00:00'", Integer.class));
+        jdbcTemplate.update("INSERT INTO LIKES (USER_ID, FILM_ID) VALUES (2, 2)");
+        assertEquals(1, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM LIKES WHERE CREATED_AT > TIMESTAMP '1970-01-01 00:00:00'", Integer.class));
+    }
+
+    @Test
+    @DisplayName("Связи с режиссерами очищаются от повторов и получают первичный ключ")
+    void filmsAndDirectorsKeyTest() {
+        migrate();
+        migrate();
+        assertEquals(List.of(1, 2), jdbcTemplate.queryForList(
+                "SELECT FILM_ID FROM FILMS_AND_DIRECTORS ORDER BY FILM_ID", Integer.class));
+        assertThrows(DuplicateKeyException.class,
+                () -> jdbcTemplate.update("INSERT INTO FILMS_AND_DIRECTORS VALUES (1, 1)"));
+    }
+
+    private void migrate() {
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(database);
+    }
+}
@@ -0,0 +1,161 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.util.ClassUtils;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Оборачивает DataSource приложения и запоминает SQL, который хранилища на самом деле выполняют,
+ * вместе с первыми переданными в него параметрами, и число выполнений каждого запроса.
+ * Запись идет только между start() и stop(). Строка пакета считается отдельным выполнением.
+ */
+public class StatementRecorder implements BeanPostProcessor {
+
+    private final Map<String, RecordedStatement> statements = new LinkedHashMap<>();
+    private final Map<String, Integer> executions = new LinkedHashMap<>();
+    private volatile boolean recording;
+    private DataSource target;
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!(bean instanceof DataSource)) {
+            return bean;
+        }
+        target = (DataSource) bean;
+        return wrap(bean, (proxy, method, args) -> {
+            Object result = invoke(bean, method, args);
+            return method.getName().equals("getConnection") ? wrapConnection((Connection) result) : result;
+        });
+    }
+
+    public synchronized void start() {
+        statements.clear();
+        executions.clear();
+        recording = true;
+    }
+
+    public void stop() {
+        recording = false;
+    }
+
+    public synchronized List<RecordedStatement> getStatements() {
+        return new ArrayList<>(statements.values());
+    }
+
+    /**
+     * Сколько раз с момента start() выполнялись запросы, содержащие фрагмент.
+     */
+    public synchronized int countExecutions(String fragment) {
+        return executions.entrySet().stream()
+                .filter(entry -> entry.getKey().contains(fragment))
+                .mapToInt(Map.Entry::getValue)
+                .sum();
+    }
+
+    /**
+     * Сколько всего запросов выполнено с момента start().
+     */
+    public synchronized int countExecutions() {
+        return countExecutions("");
+    }
+
+    /**
+     * Исходный DataSource: запросы через него не записываются.
+     */
+    public DataSource getTarget() {
+        return target;
+    }
+
+    private Connection wrapConnection(Connection connection) {
+        return wrap(connection, (proxy, method, args) -> {
+            Object result = invoke(connection, method, args);
+            if (method.getName().equals("prepareStatement")) {
+                return wrapPrepared((PreparedStatement) result, (String) args[0]);
+            }
+            if (method.getName().equals("createStatement")) {
+                return wrapStatement((Statement) result);
+            }
+            return result;
+        });
+    }
+
+    private PreparedStatement wrapPrepared(PreparedStatement statement, String sql) {
+        Map<Integer, Object> params = new TreeMap<>();
+        return wrap(statement, (proxy, method, args) -> {
+            String name = method.getName();
+            if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                params.put((Integer) args[0], name.equals("setNull") ? null : args[1]);
+            } else if (name.equals("clearParameters")) {
+                params.clear();
+            } else if (name.equals("addBatch") || name.startsWith("execute") && !name.equals("executeBatch")) {
+                record(sql, new ArrayList<>(params.values()));
+            }
+            return invoke(statement, method, args);
+        });
+    }
+
+    private Statement wrapStatement(Statement statement) {
+        return wrap(statement, (proxy, method, args) -> {
+            String name = method.getName();
+            if ((name.startsWith("execute") || name.equals("addBatch")) && args != null && args[0] instanceof String) {
+                record((String) args[0], List.of());
+            }
+            return invoke(statement, method, args);
+        });
+    }
+
+    private synchronized void record(String sql, List<Object> params) {
+        if (recording) {
+            statements.putIfAbsent(sql, new RecordedStatement(sql, params));
+            executions.merge(sql, 1, Integer::sum);
+        }
+    }
+
+    /**
+     * Обертка равна только самой себе: иначе Spring не узнает обернутый DataSource
+     * в менеджере транзакций, сравнивая их через equals.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> T wrap(T target, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(StatementRecorder.class.getClassLoader(),
+                ClassUtils.getAllInterfaces(target), (proxy, method, args) -> {
+                    if (method.getName().equals("equals") && method.getParameterCount() == 1) {
+                        return proxy == args[0];
+                    }
+                    if (method.getName().equals("hashCode") && method.getParameterCount() == 0) {
+                        return System.identityHashCode(proxy);
+                    }
+                    return handler.invoke(proxy, method, args);
+                });
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    @AllArgsConstructor
+    @Getter
+    public static class RecordedStatement {
+        private final String sql;
+        private final List<Object> params;
+    }
+}
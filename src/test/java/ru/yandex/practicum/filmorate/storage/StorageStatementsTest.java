@@ -0,0 +1,209 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.jdbc.Sql;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmField;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.director.DirectorsStorage;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Проверяет через {@link StatementRecorder}, сколько запросов хранилища отправляют в базу:
+ * связи фильмов читаются пакетно, а при обновлении пишутся только изменившиеся связи.
+ */
+@SpringBootTest
+@Import(StatementRecorder.class)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@Sql(scripts = "file:src/main/resources/data.sql", executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+@DisplayName("Число запросов хранилищ")
+class StorageStatementsTest {
+
+    private final StatementRecorder recorder;
+    private final FilmStorage filmStorage;
+    private final UserStorage userStorage;
+    private final DirectorsStorage directorsStorage;
+    private final ReferenceDataCache referenceData;
+
+    @Test
+    @DisplayName("Связи списка фильмов читаются одним запросом на связь при любом числе фильмов")
+    void batchRelationsTest() {
+        Director director = createDirector("Francis Ford Coppola");
+        createFilm(Set.of(1, 2), Set.of(director));
+
+        assertEquals(3, countListQueries());
+
+        for (int i = 0; i < 20; i++) {
+            createFilm(Set.of(i % 6 + 1), Set.of(director));
+        }
+        assertEquals(3, countListQueries());
+
+        List<Film> films = filmStorage.getAll(FilmField.ALL);
+        assertEquals(21, films.size());
+        assertEquals(List.of(1, 2), genreIds(films.get(0)));
+        assertEquals(List.of(2), genreIds(films.get(20)));
+        assertTrue(films.stream().allMatch(film -> film.getDirectors().equals(Set.of(director))));
+        assertTrue(films.stream().allMatch(film -> "R".equals(film.getMpa().getName())));
+
+        recorder.start();
+        filmStorage.getAll(Set.of(FilmField.ID, FilmField.NAME));
+        recorder.stop();
+        assertEquals(1, recorder.countExecutions());
+    }
+
+    @Test
+    @DisplayName("Обновление фильма пишет только изменившиеся жанры и режиссеров")
+    void linkDiffTest() {
+        Director first = createDirector("Francis Ford Coppola");
+        Director second = createDirector("Sofia Coppola");
+        Director third = createDirector("Martin Scorsese");
+        Film film = createFilm(Set.of(1, 2), Set.of(first, second));
+
+        setLinks(film, Set.of(2, 3), Set.of(second, third));
+        recorder.start();
+        filmStorage.update(film);
+        directorsStorage.updateDirectorsFor(film);
+        recorder.stop();
+
+        assertEquals(1, recorder.countExecutions("DELETE FROM FILM_GENRES"));
+        assertEquals(1, recorder.countExecutions("INSERT INTO FILM_GENRES"));
+        assertEquals(1, recorder.countExecutions("delete from FILMS_AND_DIRECTORS"));
+        assertEquals(1, recorder.countExecutions("insert into FILMS_AND_DIRECTORS"));
+        Film stored = filmStorage.getById(film.getId());
+        assertEquals(List.of(2, 3), genreIds(stored));
+        assertEquals(Set.of(second, third), stored.getDirectors());
+
+        setLinks(film, Set.of(2, 3), Set.of(second, third));
+        recorder.start();
+        filmStorage.update(film);
+        directorsStorage.updateDirectorsFor(film);
+        recorder.stop();
+
+        assertEquals(0, recorder.countExecutions("DELETE FROM FILM_GENRES"));
+        assertEquals(0, recorder.countExecutions("INSERT INTO FILM_GENRES"));
+        assertEquals(0, recorder.countExecutions("delete from FILMS_AND_DIRECTORS"));
+        assertEquals(0, recorder.countExecutions("insert into FILMS_AND_DIRECTORS"));
+    }
+
+    @Test
+    @DisplayName("Страница фильмов режиссера читается одним запросом с сортировкой и LIMIT")
+    void directorPageTest() {
+        Director director = createDirector("Francis Ford Coppola");
+        for (int i = 0; i < 5; i++) {
+            createFilm(Set.of(1), Set.of(director));
+        }
+        referenceData.getDirectors();
+
+        recorder.start();
+        List<Film> films = filmStorage.getFilmsByDirector(director, "year", 2, 1, Set.of(FilmField.ID));
+        recorder.stop();
+
+        assertEquals(List.of(2, 3), films.stream()
+                .map(Film::getId)
+                .collect(Collectors.toList()));
+        assertEquals(1, recorder.countExecutions());
+        assertEquals(1, recorder.countExecutions("ORDER BY F.RELEASE_DATE, F.ID LIMIT"));
+    }
+
+    @Test
+    @DisplayName("Выгрузка берет число лайков из счетчика и не читает таблицу лайков")
+    void exportTest() {
+        Director director = createDirector("Francis Ford Coppola");
+        for (int i = 0; i < 3; i++) {
+            createFilm(Set.of(1), Set.of(director));
+        }
+        for (String login : List.of("woz", "jobs")) {
+            userStorage.create(User.builder()
+                    .name(login)
+                    .email(login + "@apple.com")
+                    .login(login)
+                    .birthday(LocalDate.of(1955, 2, 24))
+                    .build());
+        }
+        filmStorage.addLike(1, 1);
+        filmStorage.addLike(1, 2);
+        filmStorage.addLike(3, 2);
+
+        List<String> exported = new ArrayList<>();
+        recorder.start();
+        filmStorage.exportAll((film, likeCount) -> {
+            assertEquals(Set.of(director), film.getDirectors());
+            assertTrue(film.getLikes().isEmpty());
+            exported.add(film.getId() + ":" + likeCount);
+        });
+        recorder.stop();
+
+        assertEquals(List.of("1:2", "2:0", "3:1"), exported);
+        assertEquals(0, recorder.countExecutions("LIKES WHERE"));
+    }
+
+    /**
+     * Считает запросы чтения списка фильмов со всеми связями: фильмы, жанры и режиссеры.
+     * Рейтинги, жанры и режиссеры как справочники берутся из прогретого кэша.
+     */
+    private int countListQueries() {
+        referenceData.getDirectors();
+        recorder.start();
+        filmStorage.getAll(FilmField.ALL);
+        recorder.stop();
+        return recorder.countExecutions();
+    }
+
+    private Director createDirector(String name) {
+        Director director = new Director();
+        director.setName(name);
+        return directorsStorage.create(director);
+    }
+
+    private Film createFilm(Set<Integer> genreIds, Set<Director> directors) {
+        Film film = Film.builder()
+                .name("The Godfather")
+                .description("description")
+                .duration(175)
+                .releaseDate(LocalDate.of(1972, 3, 14))
+                .mpa(new Mpa(4, null, null))
+                .directors(new HashSet<>())
+                .build();
+        setLinks(film, genreIds, directors);
+        filmStorage.create(film);
+        directorsStorage.updateDirectorsFor(film);
+        return film;
+    }
+
+    private static void setLinks(Film film, Set<Integer> genreIds, Set<Director> directors) {
+        film.getGenres().clear();
+        genreIds.stream()
+                .sorted()
+                .forEach(genreId -> film.getGenres().add(new Genre(genreId, null)));
+        film.getDirectors().clear();
+        film.getDirectors().addAll(directors);
+    }
+
+    private static List<Integer> genreIds(Film film) {
+        return film.getGenres().stream()
+                .map(Genre::getId)
+                .collect(Collectors.toList());
+    }
+}
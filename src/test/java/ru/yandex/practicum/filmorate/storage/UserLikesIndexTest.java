@@ -0,0 +1,68 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.storage.film.UserLikesIndex;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Тесты UserLikesIndex")
+class UserLikesIndexTest {
+
+    private UserLikesIndex index;
+
+    @BeforeEach
+    void init() {
+        index = new UserLikesIndex();
+    }
+
+    @Test
+    @DisplayName("Проверка лайка и его снятия")
+    void hasLikedTest() {
+        index.add(1, 10);
+        assertTrue(index.hasLiked(1, 10));
+        assertFalse(index.hasLiked(1, 11));
+        assertFalse(index.hasLiked(2, 10));
+        index.remove(1, 10);
+        assertFalse(index.hasLiked(1, 10));
+    }
+
+    @Test
+    @DisplayName("Общие фильмы в редких и плотных блоках")
+    void getCommonTest() {
+        Set<Integer> expected = new HashSet<>();
+        for (int filmId = 0; filmId < 20_000; filmId++) {
+            index.add(1, filmId);
+            if (filmId % 3 == 0) {
+                index.add(2, filmId);
+                expected.add(filmId);
+            }
+        }
+        index.add(1, 100_000);
+        index.add(2, 100_000);
+        index.add(2, 200_000);
+        expected.add(100_000);
+
+        assertEquals(expected, new HashSet<>(index.getCommon(1, 2)));
+        assertEquals(expected, new HashSet<>(index.getCommon(2, 1)));
+        assertTrue(index.getCommon(1, 3).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Удаление фильма и пользователя")
+    void removeFilmAndUserTest() {
+        index.add(1, 10);
+        index.add(2, 10);
+        index.add(2, 11);
+        index.removeFilm(10);
+        assertEquals(List.of(), index.getCommon(1, 2));
+        assertTrue(index.hasLiked(2, 11));
+        index.removeUser(2);
+        assertFalse(index.hasLiked(2, 11));
+    }
+}